@@ -0,0 +1,51 @@
+package core;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * A seeded Board that has been filled half way up by the generator, shared by the benchmarks
+ */
+@State(Scope.Thread)
+public class MidGameBoard {
+
+    @Param({"10", "100", "400"})
+    public int width;
+
+    @Param({"20", "100"})
+    public int height;
+
+    // Number of Pieces the generator looks ahead at, 1 is no lookahead. Run with -p lookahead=3 to benchmark it
+    @Param({"1"})
+    public int lookahead;
+
+    Board board;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Window.logging = false;
+
+        // Flat stacking weights, the same as Window uses when there is no height difference
+        PotentialBoardState.setScoringStrategy(WeightedScoring.flatStacking());
+
+        Window.argLookahead = lookahead;
+
+        board = new Board(width, height, new Random(2));
+
+        // Place Pieces until every column is at least half way up the board
+        while (board.board.getMinColumnHeight() < height / 2) {
+            board.simulateCurrentPiece();
+            board.loadNextPieceFromQueue();
+
+            if (board.shouldSaveAndResetBoard) {
+                board.resetBoard();
+                board.shouldSaveAndResetBoard = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collision checks and hard drops of a T Piece, moved one column to the right on every call so each call looks at
+ * different columns of the board
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PieceBenchmark {
+
+    private BoardArray board;
+    private Piece piece;
+    private int firstX;
+    private int lastX;
+
+    @Setup(Level.Trial)
+    public void setUp(MidGameBoard midGameBoard) {
+        board = midGameBoard.board.board;
+        piece = new Piece(board, Piece.PieceColour.T, 0, 0);
+        firstX = -piece.orientation.minXOffset;
+        lastX = midGameBoard.width - 1 - piece.orientation.maxXOffset;
+        piece.boardX = firstX;
+    }
+
+    private void moveToNextColumn() {
+        piece.boardX = piece.boardX == lastX ? firstX : piece.boardX + 1;
+    }
+
+    @Benchmark
+    public boolean wouldNewCenterBeValid() {
+        moveToNextColumn();
+        return piece.wouldNewCenterBeValid(piece.boardX, board.getColumnHeight(piece.boardX));
+    }
+
+    @Benchmark
+    public int hardDropPiece() {
+        moveToNextColumn();
+        piece.hardDropPiece();
+        return piece.boardY;
+    }
+
+    @Benchmark
+    public int hardDropPieceStepwise() {
+        moveToNextColumn();
+        return piece.findLandingRowStepwise();
+    }
+}
@@ -0,0 +1,50 @@
+package core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring a single candidate on a mid-game board
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PotentialBoardStateBenchmark {
+
+    private PotentialBoardState state;
+    private Piece piece;
+
+    @Setup(Level.Trial)
+    public void setUp(MidGameBoard midGameBoard) {
+        Board board = midGameBoard.board;
+        state = new PotentialBoardState(board);
+
+        piece = new Piece(board.board, Piece.PieceColour.T, midGameBoard.width / 2, 0);
+        piece.hardDropPiece();
+    }
+
+    @Benchmark
+    public float score() {
+        state.setWithoutPlacing(piece.orientation, piece.boardX, piece.boardY);
+        return state.score;
+    }
+
+    @Benchmark
+    public float scoreExtractedFeatures() {
+        return PotentialBoardState.getScoringStrategy().score(state.features);
+    }
+}
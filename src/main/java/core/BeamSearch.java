@@ -0,0 +1,363 @@
+package core;
+
+import core.Piece.PieceColour;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Chooses where the current Piece goes by looking ahead at the Pieces already in the queue. Placement sequences are
+ * built one Piece at a time and only the best few sequences (the beam) are kept at each depth, a sequence is scored by
+ * the board it leaves once its last Piece is placed. Only the first move of the best sequence is used, the next Piece
+ * searches again from the board that move leaves.
+ * <p>
+ * Each move of a sequence stores the index of the sequence it extends at the depth before it. The board is brought to
+ * the end of a sequence by placing its moves and taken back by removing them, so boards are never copied.
+ * <p>
+ * When more moves share the worst score in a full beam than there is room for, the ones that are kept are chosen by
+ * reservoir sampling, so every move with that score is equally likely to be kept whatever order they were found in
+ */
+class BeamSearch {
+    private Board owner;
+    private BoardArray board;
+    private Random random;
+    // Number of Pieces in a full sequence, including the current Piece
+    private int depth;
+    // Number of sequences kept at each depth
+    private int width;
+
+    // First move of each sequence in the beam, sorted from the best score to the worst
+    private PotentialBoardState[] firstMoves;
+    // Later moves of each sequence, indexed by depth then position in the beam and sorted the same way. Depth 0 is
+    // stored in firstMoves, so those entries aren't used
+    private PieceOrientation[][] orientations;
+    private int[][] xPositions;
+    private int[][] yPositions;
+    private int[][] parents;
+    private float[][] scores;
+    // Number of sequences in the beam at each depth
+    private int[] counts;
+    // Worst score in the full beam at each depth, NaN until the beam is full, and the number of moves offered with
+    // that score including the ones that weren't kept
+    private float[] boundaryScores;
+    private int[] boundaryMoves;
+
+    // Reused to place and remove moves, and to score them
+    private Piece piece;
+    private PotentialBoardState state;
+    // Position in the beam of each move of the sequence being placed, indexed by depth
+    private int[] path;
+
+    /**
+     * @param owner  Board to search on
+     * @param random Source of randomness used to choose between moves with the same score
+     * @param depth  Number of Pieces in a full sequence, including the current Piece
+     * @param width  Number of sequences kept at each depth
+     */
+    BeamSearch(Board owner, Random random, int depth, int width) {
+        this.owner = owner;
+        this.board = owner.board;
+        this.random = random;
+        this.depth = depth;
+        this.width = width;
+
+        firstMoves = new PotentialBoardState[width];
+        for (int i = 0; i < width; i++) {
+            firstMoves[i] = new PotentialBoardState(owner);
+        }
+
+        orientations = new PieceOrientation[depth][width];
+        xPositions = new int[depth][width];
+        yPositions = new int[depth][width];
+        parents = new int[depth][width];
+        scores = new float[depth][width];
+        counts = new int[depth];
+        boundaryScores = new float[depth];
+        boundaryMoves = new int[depth];
+
+        piece = new Piece(board, PieceColour.I, 0, 0);
+        state = new PotentialBoardState(owner);
+        path = new int[depth];
+    }
+
+    /**
+     * Empties the beam, ready for the first moves of a new search to be offered
+     */
+    void clear() {
+        clearLevel(0);
+    }
+
+    /**
+     * Adds a placement of the current Piece to the beam if it is one of the best so far
+     *
+     * @param candidate Placement of the current Piece, it is copied rather than kept
+     */
+    void offer(PotentialBoardState candidate) {
+        int position = makeRoom(0, candidate.score);
+        if (position == -1) return;
+
+        firstMoves[position].copyFrom(candidate);
+    }
+
+    /**
+     * Extends the first moves in the beam with the Pieces in the queue and picks the best sequence. If no sequence can
+     * be extended to the full depth, or the queue runs out, the best of the longest sequences is picked. Sequences with
+     * the same score are equally likely to be picked
+     *
+     * @param queue      Pieces waiting to be placed
+     * @param queueStart Index of the Piece in the queue that comes after the current Piece
+     * @param result     Set to the first move of the best sequence, with the score of the whole sequence
+     * @return true if there was a first move in the beam, false otherwise
+     */
+    boolean search(List<PieceColour> queue, int queueStart, PotentialBoardState result) {
+        if (counts[0] == 0) return false;
+
+        int deepest = 0;
+        for (int level = 1; level < depth && queueStart + level - 1 < queue.size(); level++) {
+            PieceColour pieceColour = queue.get(queueStart + level - 1);
+            clearLevel(level);
+
+            for (int sequence = 0; sequence < counts[level - 1]; sequence++) {
+                placeSequence(level - 1, sequence);
+                extend(level, sequence, pieceColour);
+                removeSequence(level - 1);
+            }
+
+            // None of the sequences could be extended, so use the ones from the depth before
+            if (counts[level] == 0) break;
+            deepest = level;
+        }
+
+        // The beam is sorted, so the sequences with the best score are at the start
+        int pick = 0;
+        float bestScore = score(deepest, 0);
+        for (int sequence = 1; sequence < counts[deepest] && score(deepest, sequence) == bestScore; sequence++) {
+            if (random.nextInt(sequence + 1) == 0) pick = sequence;
+        }
+
+        // Follow the sequence back to its first move
+        for (int level = deepest; level > 0; level--) {
+            pick = parents[level][pick];
+        }
+
+        result.copyFrom(firstMoves[pick]);
+        result.score = bestScore;
+
+        return true;
+    }
+
+    /**
+     * Tries every placement of a Piece that keeps the board within its hole budget on the end of a sequence and adds
+     * the good ones to the beam
+     *
+     * @param level       Depth of the new moves
+     * @param parent      Position in the beam of the sequence being extended, at the depth before
+     * @param pieceColour Piece to place
+     */
+    private void extend(int level, int parent, PieceColour pieceColour) {
+        piece.pieceColour = pieceColour;
+        piece.orientation = PieceOrientation.getSpawnOrientation(pieceColour);
+
+        for (int i = 0; i < PieceOrientation.getOrientationCount(pieceColour); i++) {
+            int firstX = -piece.orientation.minXOffset;
+            int lastX = board.width - 1 - piece.orientation.maxXOffset;
+
+            for (int x = firstX; x <= lastX; x++) {
+                piece.boardX = x;
+                piece.boardY = piece.findLandingRow();
+
+                if (piece.boardY + piece.orientation.maxYOffset > board.height - 1) continue;
+                if (!owner.isWithinHoleBudget(piece)) continue;
+                if (!owner.keepsHeightDiffReachable(piece.orientation, x, piece.boardY)) continue;
+
+                piece.placePieceOnBoard();
+                state.set(piece.orientation, piece.boardX, piece.boardY);
+                piece.removePieceOnBoard();
+
+                insert(level, parent, state);
+            }
+
+            piece.rotatePieceClockwise();
+        }
+    }
+
+    /**
+     * Adds a move to the beam at a depth above 0 if it is one of the best so far
+     */
+    private void insert(int level, int parent, PotentialBoardState move) {
+        int position = makeRoom(level, move.score);
+        if (position == -1) return;
+
+        orientations[level][position] = move.orientation;
+        xPositions[level][position] = move.pieceX;
+        yPositions[level][position] = move.pieceY;
+        parents[level][position] = parent;
+        scores[level][position] = move.score;
+    }
+
+    /**
+     * Empties the beam at a depth
+     */
+    private void clearLevel(int level) {
+        counts[level] = 0;
+        boundaryScores[level] = Float.NaN;
+    }
+
+    /**
+     * Finds where a move with the score goes in the beam and makes room for it there. A move that ties the worst score
+     * of a full beam replaces one of the moves with that score with a probability of (moves kept with that score) /
+     * (moves offered with that score), otherwise it is dropped. A better move pushes out one of the moves with the
+     * worst score at random. Either way the moves kept with the worst score are an even sample of the ones offered
+     *
+     * @return Position to write the move to, or -1 if the move isn't kept
+     */
+    private int makeRoom(int level, float score) {
+        if (counts[level] < width) {
+            int position = findPosition(level, score);
+            shiftDown(level, position, counts[level]);
+            counts[level]++;
+
+            return position;
+        }
+
+        float worstScore = score(level, width - 1);
+        if (score > worstScore) return -1;
+
+        int firstTie = width - 1;
+        while (firstTie > 0 && score(level, firstTie - 1) == worstScore) firstTie--;
+        int ties = width - firstTie;
+
+        if (score == worstScore) {
+            // Nothing with the worst score has been dropped yet, so every move offered with it is still in the beam
+            if (boundaryScores[level] != worstScore) {
+                boundaryScores[level] = worstScore;
+                boundaryMoves[level] = ties;
+            }
+            boundaryMoves[level]++;
+
+            int slot = random.nextInt(boundaryMoves[level]);
+            return slot < ties ? firstTie + slot : -1;
+        }
+
+        // The move that falls off the end is a random one of the moves with the worst score. It still counts as offered,
+        // so later moves with that score are kept as often as the ones already in the beam
+        if (boundaryScores[level] != worstScore) {
+            boundaryScores[level] = worstScore;
+            boundaryMoves[level] = ties;
+        }
+        swap(level, firstTie + random.nextInt(ties), width - 1);
+        int position = findPosition(level, score);
+        shiftDown(level, position, width - 1);
+
+        return position;
+    }
+
+    /**
+     * @return Position a move with the score goes in the beam, after every move with the same or a better score
+     */
+    private int findPosition(int level, float score) {
+        int position = counts[level];
+        while (position > 0 && score < score(level, position - 1)) position--;
+
+        return position;
+    }
+
+    /**
+     * Moves the entries from a position up to the last position down the beam by one, the entry at the last position
+     * is overwritten. At depth 0 its state is reused for the entry at the position
+     */
+    private void shiftDown(int level, int position, int last) {
+        int moved = last - position;
+
+        if (level == 0) {
+            PotentialBoardState reused = firstMoves[last];
+            System.arraycopy(firstMoves, position, firstMoves, position + 1, moved);
+            firstMoves[position] = reused;
+            return;
+        }
+
+        System.arraycopy(orientations[level], position, orientations[level], position + 1, moved);
+        System.arraycopy(xPositions[level], position, xPositions[level], position + 1, moved);
+        System.arraycopy(yPositions[level], position, yPositions[level], position + 1, moved);
+        System.arraycopy(parents[level], position, parents[level], position + 1, moved);
+        System.arraycopy(scores[level], position, scores[level], position + 1, moved);
+    }
+
+    /**
+     * Swaps two entries of the beam at a depth
+     */
+    private void swap(int level, int i, int j) {
+        if (level == 0) {
+            PotentialBoardState state = firstMoves[i];
+            firstMoves[i] = firstMoves[j];
+            firstMoves[j] = state;
+            return;
+        }
+
+        PieceOrientation orientation = orientations[level][i];
+        orientations[level][i] = orientations[level][j];
+        orientations[level][j] = orientation;
+
+        int x = xPositions[level][i];
+        xPositions[level][i] = xPositions[level][j];
+        xPositions[level][j] = x;
+
+        int y = yPositions[level][i];
+        yPositions[level][i] = yPositions[level][j];
+        yPositions[level][j] = y;
+
+        int parent = parents[level][i];
+        parents[level][i] = parents[level][j];
+        parents[level][j] = parent;
+
+        float score = scores[level][i];
+        scores[level][i] = scores[level][j];
+        scores[level][j] = score;
+    }
+
+    private float score(int level, int sequence) {
+        return level == 0 ? firstMoves[sequence].score : scores[level][sequence];
+    }
+
+    /**
+     * Places every move of a sequence on the board, from its first move up to the given depth
+     */
+    private void placeSequence(int level, int sequence) {
+        for (int i = level; i >= 0; i--) {
+            path[i] = sequence;
+            if (i > 0) sequence = parents[i][sequence];
+        }
+
+        for (int i = 0; i <= level; i++) {
+            moveTo(i, path[i]);
+            piece.placePieceOnBoard();
+        }
+    }
+
+    /**
+     * Removes the moves of the sequence last placed by {@link BeamSearch#placeSequence(int, int)}, last move first
+     */
+    private void removeSequence(int level) {
+        for (int i = level; i >= 0; i--) {
+            moveTo(i, path[i]);
+            piece.removePieceOnBoard();
+        }
+    }
+
+    /**
+     * Moves the reused Piece to a move in the beam
+     */
+    private void moveTo(int level, int sequence) {
+        if (level == 0) {
+            piece.orientation = firstMoves[sequence].orientation;
+            piece.boardX = firstMoves[sequence].pieceX;
+            piece.boardY = firstMoves[sequence].pieceY;
+        } else {
+            piece.orientation = orientations[level][sequence];
+            piece.boardX = xPositions[level][sequence];
+            piece.boardY = yPositions[level][sequence];
+        }
+
+        piece.pieceColour = piece.orientation.pieceColour;
+    }
+}
@@ -1,13 +1,15 @@
 package core;
 
 /**
- * Represents a single individual square on the board.
+ * Represents the colour of a square on the board. The board doesn't store a Block per square, it stores a palette
+ * index per square and hands out the palette's Block for that index as a view. That Block is shared by every square
+ * with the same colour, so a Block can't be changed once it is made.
  */
 public class Block {
 
-    int r;
-    int g;
-    int b;
+    final int r;
+    final int g;
+    final int b;
 
     /**
      * Initialises the block with a given colour
@@ -21,28 +23,6 @@ public class Block {
         this.b = b;
     }
 
-    /**
-     * Sets the colour of the block
-     * @param r Red component, 0 - 255
-     * @param g Green component, 0 - 255
-     * @param b Blue component, 0 - 255
-     */
-    public void setColour(int r, int g, int b) {
-        this.r = r;
-        this.g = g;
-        this.b = b;
-    }
-
-    /**
-     * Sets the colour to that of another block
-     * @param block core.Block to copy the colour from
-     */
-    void setColour(Block block) {
-        r = block.r;
-        g = block.g;
-        b = block.b;
-    }
-
     @Override
     public String toString() {
         return Piece.PieceColour.identifyColourName(r, g, b);
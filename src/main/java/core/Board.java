@@ -7,46 +7,144 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Random;
 
+/**
+ * Generates a board by simulating Pieces. All generation state is held per instance so several Boards can be
+ * generated at the same time, each one on its own thread
+ */
 public class Board {
-    public static BoardArray board;
-    static Piece currentPiece;
-    static PieceColour holdPieceColour;
+    public BoardArray board;
+    Piece currentPiece;
+    PieceColour holdPieceColour;
 
-    static ArrayList<TowerGoal> towerGoals;
-    static TowerGoal currentTowerGoal;
+    ArrayList<TowerGoal> towerGoals;
+    TowerGoal currentTowerGoal;
 
-    private static Random random;
+    private Random random;
     private static int pieceStartX = 3;
     private static int pieceStartY = 2;
-    static boolean canHold = true;
-    private static ArrayList<PieceColour> currentPieceList;
-    private static int pieceCount = 0;
+    boolean canHold = true;
+    ArrayList<PieceColour> currentPieceList;
+    private int pieceCount = 0;
+
+    // Set when a perfect Board has been found, the owner of the Board should save it and reset the Board
+    boolean shouldSaveAndResetBoard = false;
+    // Set once every Tower has been built, the Board is then finished off to the height difference
+    boolean heightDiffPhase = false;
+    // Strategy the candidates of this Board are scored with, it changes when the height difference phase starts
+    private ScoringStrategy scoringStrategy = PotentialBoardState.getScoringStrategy();
+    // Set by the simulation thread, whose snapshots carry only the cells that change. Cells changed by placements and
+    // backtracking since the last snapshot are kept packed as y * width + x, the headless generator never draws so it
+    // doesn't keep them
+    boolean trackChangedCells = false;
+    private int[] changedCells = new int[64];
+    private int changedCellCount;
+    // Set when the whole Board has changed, e.g. after a reset, so every cell has to be redrawn
+    private boolean fullRedrawNeeded = true;
+    // Number of holes the Board is allowed to have, set from the chaos. With a budget of 0 every placement has to sit
+    // flat on the blocks underneath it
+    final int holeBudget;
+
+    // Rows of board kept in memory when streaming, the board is a window this high that moves up the image as the
+    // rows under it are finished and written out
+    private static final int STREAM_WINDOW_ROWS = 4 * HeadlessGenerator.STREAM_BAND_ROWS;
+    // Visible height of the whole image, bigger than the height of the board when streaming
+    final int imageHeight;
+    // Number of rows of the image that have been dropped from the bottom of the board, and the holes they had
+    int streamedRows;
+    private int streamedHoles;
+
+    // Reused for every candidate while simulating a Piece, so no objects are created per candidate
+    private PotentialBoardState candidate = new PotentialBoardState(this);
+    private PotentialBoardState bestCandidate = new PotentialBoardState(this);
+    // Best candidate of the current Piece while the alternative to holding it is being tried
+    private PotentialBoardState currentPieceCandidate = new PotentialBoardState(this);
+    // Looks ahead at the queue to choose between candidates, null if lookahead is disabled
+    private BeamSearch lookahead;
+    // Searches the candidates on several threads, null if parallel search is disabled
+    private ParallelCandidateSearch parallelSearch;
+    // Number of candidates found so far with the best score
+    private int bestCandidateCount;
+
+    // Placements since the last reset, only recorded when backtracking is enabled
+    private PlacementHistory history = new PlacementHistory();
+    // Most placements the history has held since the last reset, backtracking can go back this many minus the
+    // backtrack depth
+    private int deepestPlacement;
+    // Number of placements when the current run of backtracking started, -1 if the Board isn't backtracking
+    private int backtrackStartPlacement = -1;
+
+    // Number of times the Board has been reset because a Piece couldn't be placed
+    int resets;
+    // Number of times a placement has been taken back to get out of a dead end
+    int backtracks;
+    // Number of dead ends backtracking got out of, each of these would have been a reset without backtracking
+    int resetsAvoided;
+    // Number of dead ends found straight after a placement, before the next Piece was simulated
+    int deadEndsDetected;
+    // Number of Pieces placed including the ones on Boards that were later reset, and the number of perfect Boards
+    long piecesPlaced;
+    int perfectBoards;
+    // Number of placements that held the Piece that was due to be placed
+    int holds;
+    // Number of candidates that were scored, and the number that were skipped because they couldn't beat the best
+    long candidatesScored;
+    long candidatesPruned;
+
+    // Number of states the dead end cache can hold
+    private static final int DEAD_END_CACHE_SIZE = 1 << 16;
+    // Number of queue positions that are part of a state's hash, Pieces further back in the queue are ignored
+    private static final int HASHED_QUEUE_LENGTH = 16;
+    // Zobrist key of each Piece at each position in the queue, indexed by position then PieceColour ordinal
+    private static final long[][] queueKeys = new long[HASHED_QUEUE_LENGTH][PieceColour.values().length];
+    // Zobrist key of each held Piece, indexed by PieceColour ordinal
+    private static final long[] holdKeys = new long[PieceColour.values().length];
 
     static {
-        if (Window.argSeed == -1) {
-            // No seed specified by the user so use a random one
-            random = new Random();
-        } else {
-            // Seed has been specified by the user so use that
-            random = new Random(Window.argSeed);
+        Random random = new Random(HASHED_QUEUE_LENGTH);
+        for (long[] positionKeys : queueKeys) {
+            for (int i = 0; i < positionKeys.length; i++) {
+                positionKeys[i] = random.nextLong();
+            }
+        }
+        for (int i = 0; i < holdKeys.length; i++) {
+            holdKeys[i] = random.nextLong();
         }
     }
 
-    Board(int widthInBlocks, int heightInBlocks) {
-        board = new BoardArray(widthInBlocks, heightInBlocks);
+    // Hashes of the board and queue of states that are known to lead to a dead end
+    DeadEndCache deadEnds = new DeadEndCache(DEAD_END_CACHE_SIZE);
+
+    /**
+     * @param widthInBlocks  Width of the board in blocks
+     * @param heightInBlocks Visible height of the board in blocks
+     * @param random         Source of randomness for this Board, seeding it makes the generated Boards repeatable
+     */
+    public Board(int widthInBlocks, int heightInBlocks, Random random) {
+        this.random = random;
+        imageHeight = heightInBlocks;
+        board = new BoardArray(widthInBlocks,
+                Window.argStream ? Math.min(heightInBlocks, STREAM_WINDOW_ROWS) : heightInBlocks);
+        holeBudget = (int) (Window.chaos * board.width * imageHeight);
+
+        if (Window.argLookahead > 1) {
+            lookahead = new BeamSearch(this, random, Window.argLookahead, Window.argBeamWidth);
+        } else if (Window.argParallel) {
+            // The lookahead places Pieces on the board, so it can't be searched in parallel
+            parallelSearch = new ParallelCandidateSearch(this, history);
+        }
 
         if (Window.heightDiff != 0) generateTowerGoals();
 
-        currentPieceList = Board.generatePieceList();
+        currentPieceList = generatePieceList();
 
-        currentPiece = new Piece(currentPieceList.remove(0), pieceStartX, pieceStartY);
+        currentPiece = new Piece(board, currentPieceList.remove(0), pieceStartX, pieceStartY);
     }
 
     /**
      * Generates a random number of Tower goals between 1 and 5 and sets the first goal as the current goal. Wipes
      * the list of current Tower goals
      */
-    static private void generateTowerGoals() {
+    private void generateTowerGoals() {
         // Reset the list of Tower Goals
         towerGoals = new ArrayList<>();
 
@@ -66,7 +164,7 @@ public class Board {
      *
      * @return A shuffled PieceColour list with all 7 tetrominos
      */
-    public static ArrayList<PieceColour> generatePieceList() {
+    public ArrayList<PieceColour> generatePieceList() {
         // Fill the piece list with all tetrominos
         ArrayList<PieceColour> piecelist = new ArrayList<>(Arrays.asList(PieceColour.values()));
         // Shuffle the array list in place
@@ -80,243 +178,596 @@ public class Board {
      * Piece. If the currentPieceList is empty then a new PieceColour list is generated and the member at the start
      * of the sequence is made into the current Piece.
      */
-    static void loadNextPieceFromQueue() {
+    void loadNextPieceFromQueue() {
         if (!currentPieceList.isEmpty()) {
-            currentPiece = new Piece(currentPieceList.remove(0), pieceStartX, pieceStartY);
+            currentPiece = new Piece(board, currentPieceList.remove(0), pieceStartX, pieceStartY);
         } else {
             currentPieceList = generatePieceList();
 
-            currentPiece = new Piece(currentPieceList.remove(0), pieceStartX, pieceStartY);
+            currentPiece = new Piece(board, currentPieceList.remove(0), pieceStartX, pieceStartY);
         }
     }
 
     /**
-     * Checks if columns in the Board contain any holes
+     * Starts or leaves the height difference phase. During the phase there is no Tower goal and candidates are scored
+     * with the flat stacking weights, which pull the height difference of the board towards the target
      *
-     * @param columns List of column indices to check
-     * @return true if any of those columns contain any holes, false otherwise
+     * @param heightDiffPhase true to start the phase, false to go back to building Towers
      */
-    private static boolean doColumnsContainHoles(int[] columns) {
-        for (int columnIndex : columns) {
-            // For all blocks in the column except the lowest layer
-            for (int i = board.height - 1; i > 0; i--) {
-                // If there is a block with a hole underneath it, return true
-                Block thisBlock = board.getBlock(columnIndex, i);
-                Block underneathBlock = board.getBlock(columnIndex, i - 1);
-                if (thisBlock != null && underneathBlock == null) return true;
-            }
+    private void setHeightDiffPhase(boolean heightDiffPhase) {
+        this.heightDiffPhase = heightDiffPhase;
+
+        if (heightDiffPhase) {
+            currentTowerGoal = null;
+            scoringStrategy = WeightedScoring.flatStacking();
+        } else {
+            scoringStrategy = PotentialBoardState.getScoringStrategy();
         }
+    }
 
-        return false;
+    /**
+     * @return Height the lowest column has to reach to finish the Board, the visible height minus the height
+     * difference
+     */
+    private int getTargetMinColumnHeight() {
+        return Math.max(board.visibleHeight - Window.heightDiff, 0);
+    }
+
+    /**
+     * Checks if a placement would still let the Board be finished to the height difference. When there is a height
+     * difference the lowest column can't go above the target, while the Towers are built as well as afterwards,
+     * otherwise the visible height difference would be too small and could never be made big enough again. Without a
+     * height difference every placement is allowed
+     *
+     * @param orientation Orientation of the Piece
+     * @param pieceX      Column of the center of the Piece
+     * @param pieceY      Row of the center of the Piece
+     * @return true if the placement is allowed, false otherwise
+     */
+    boolean keepsHeightDiffReachable(PieceOrientation orientation, int pieceX, int pieceY) {
+        return Window.heightDiff == 0 ||
+                board.getMinColumnHeightWith(orientation, pieceX, pieceY) <= getTargetMinColumnHeight();
+    }
+
+    /**
+     * Checks if the height difference phase is done: the lowest column is at the target and the highest reaches the
+     * top of the visible area, so the visible part of the board has exactly the height difference
+     *
+     * @return true if the Board is finished, false otherwise
+     */
+    private boolean isHeightDiffReached() {
+        return heightDiffPhase && board.getMinColumnHeight() == getTargetMinColumnHeight() &&
+                board.getMaxColumnHeight() >= board.visibleHeight;
     }
 
     /**
-     * @return The height difference of the board in blocks, a level board has a height difference of 0
+     * Checks if the columns a Piece is in contain any holes, including the column to the left of the piece and the one
+     * to the right of the piece if they are inside the board
+     *
+     * @param piece Piece to check the columns of
+     * @return true if any of those columns contain any holes, false otherwise
      */
-    private static int calculateBoardHeightDiff() {
-        // Initialise variables to their max value, they will be modified by this function
-        int minHeight = Integer.MAX_VALUE;
-        int maxHeight = Integer.MIN_VALUE;
+    private boolean doColumnsContainHoles(Piece piece) {
+        int fromColumn = Math.max(piece.boardX + piece.orientation.minXOffset - 1, 0);
+        int toColumn = Math.min(piece.boardX + piece.orientation.maxXOffset + 1, board.width - 1);
 
-        // Iterate through all the columns
-        for (int i = 0; i < board.width; i++) {
+        return board.doColumnsContainHoles(fromColumn, toColumn);
+    }
 
-            // Move down the column until we find a block
-            // Start at the top of the core.Board, index visibleHeight - 1
-            for (int j = board.height - 1; j >= 0; j--) {
+    /**
+     * Clears every Block from the Board and generates new Tower goals. Rows that have already been streamed out stay
+     * in the image, the Board starts again on top of them
+     */
+    void resetBoard() {
+        generateTowerGoals();
+        setHeightDiffPhase(false);
 
-                // If we see a block then we can stop for this column
-                if (board.getBlock(i, j) != null) {
-                    // Set it as the new maximum height if it is bigger than the current maximum
-                    if (j > maxHeight) maxHeight = j;
-                    // Set it as the new minimum height if it is smaller than the current minimum
-                    if (j < minHeight) minHeight = j;
+        board.clear();
+        fullRedrawNeeded = true;
+        changedCellCount = 0;
 
-                    break;
-                }
-            }
+        history.clear();
+        deepestPlacement = 0;
+        backtrackStartPlacement = -1;
 
+        holdPieceColour = null;
+        canHold = true;
+    }
 
-        }
+    /**
+     * Checks if a Piece can go at its current position without taking the Board over its hole budget
+     *
+     * @param piece Piece to check, it must not be on the board
+     * @return true if the Piece wouldn't leave more holes than the budget has left, false otherwise
+     */
+    boolean isWithinHoleBudget(Piece piece) {
+        return piece.countNewHoles() <= getHolesLeft();
+    }
 
-        return maxHeight - minHeight;
+    /**
+     * @return Number of holes the Board can still make, counting the holes in rows that have been streamed out
+     */
+    int getHolesLeft() {
+        return holeBudget - streamedHoles - board.getHoleCount();
     }
 
     /**
+     * Finds how many rows at the bottom of the board can be streamed out. Rows are finished once every column is above
+     * them, as no Piece can land under the top of a column. Rows are only streamed while there are image rows above
+     * the board left to move it up into, so when the image is finished the board holds its top rows
      *
+     * @return Number of rows to stream, a full band or 0
      */
-    static void resetBoard() {
-        generateTowerGoals();
+    int getStreamableRows() {
+        int rows = Math.min(HeadlessGenerator.STREAM_BAND_ROWS, imageHeight - streamedRows - board.visibleHeight);
 
-        for (int i = 0; i < board.width; i++) {
-            for (int j = 0; j < board.height; j++) {
-                board.set(i, j, null);
-            }
-        }
+        return rows > 0 && board.getMinColumnHeight() >= rows ? rows : 0;
     }
 
-    static int getColumnHeight(int x) {
-        for (int i = Board.board.visibleHeight - 1; i >= 0; i--) {
-            if (Board.board.getBlock(x, i) != null) return i;
-        }
+    /**
+     * Drops streamed rows from the bottom of the board and moves the board up the image. Placements under the dropped
+     * rows can't be taken back, so the backtracking history starts again
+     *
+     * @param rows Number of rows that have been written out, from {@link Board#getStreamableRows()}
+     */
+    void dropStreamedRows(int rows) {
+        streamedHoles += board.dropBottomRows(rows);
+        streamedRows += rows;
+        // Every row has moved down
+        fullRedrawNeeded = true;
+        changedCellCount = 0;
+
+        history.clear();
+        deepestPlacement = 0;
+        backtrackStartPlacement = -1;
+    }
 
-        return 0;
+    /**
+     * Resets the Board after its image has been saved, so the next image starts from the bottom
+     */
+    void startNextImage() {
+        resetBoard();
+        streamedRows = 0;
+        streamedHoles = 0;
+        shouldSaveAndResetBoard = false;
     }
 
     /**
-     * Checks if the Board has no holes, in other words the Board is "perfect"
+     * Checks if every column of the Board reaches the top of the visible area, in other words the Board is "perfect".
+     * Any holes under the top are within the hole budget
      *
      * @return true if the Board is perfect, false otherwise
      */
-    private static boolean isBoardPerfect() {
+    private boolean isBoardPerfect() {
+        return board.getMinColumnHeight() >= board.visibleHeight;
+    }
+
+    /**
+     * Finds the best position and rotation for the current Piece and places it there. When holding is enabled the
+     * held Piece (or the next Piece, if nothing is held) is tried as well and whichever has the better candidate is
+     * placed. If no Piece can be placed then the Board is either finished or reset
+     */
+    void simulateCurrentPiece() {
+        PieceColour previousHold = holdPieceColour;
+        boolean found = findBestCandidate(hashState(null, 0, holdPieceColour), 0);
+        boolean usedHold = Window.argHold && canHold && tryHeldPiece(found);
+
+        if (usedHold) found = true;
+
+        if (found) {
+            // Move the current Piece to the best candidate and place it
+            currentPiece.orientation = bestCandidate.orientation;
+            currentPiece.boardX = bestCandidate.pieceX;
+            currentPiece.boardY = bestCandidate.pieceY;
+            currentPiece.placePieceOnBoard();
+            recordChangedCells(currentPiece);
+            pieceCount++;
+            piecesPlaced++;
+
+            // The Piece is locked, so the next Piece can be held again
+            canHold = true;
+
+            TowerGoal completedGoal = null;
+
+            // If we are making Towers then check if we have reached the current goal
+            if (Window.heightDiff != 0 && !heightDiffPhase) {
+                // If the placed Piece is close to the current Tower goal
+                if (Window.dist(bestCandidate.pieceX, bestCandidate.pieceY, currentTowerGoal.getBoardX(),
+                        currentTowerGoal.getBoardY()) < 2) {
+                    // Then this Tower is complete, we can remove it from the list
+                    completedGoal = towerGoals.remove(0);
+
+                    // If there are no Towers left to make, move onto the heightDiff phase
+                    if (towerGoals.isEmpty()) {
+                        setHeightDiffPhase(true);
+                    } else {
+                        // Otherwise, there are still Towers to create, so we should set the next Tower goal as our
+                        // current goal
+                        currentTowerGoal = towerGoals.get(0);
+                    }
+                }
+            }
+
+            if (Window.argBacktrackDepth > 0) recordPlacement(completedGoal, usedHold, previousHold);
 
-        for (int i = 0; i < board.width; i++) {
-            for (int j = 0; j < board.visibleHeight; j++) {
-                if (board.getBlock(i, j) == null) return false;
+            if (isHeightDiffReached()) {
+                System.out.println("Height difference reached " + pieceCount);
+                perfectBoards++;
+                shouldSaveAndResetBoard = true;
+
+            // If the next Piece can't go anywhere then this placement is a dead end, so deal with it now instead of
+            // waiting for the next Piece to fail
+            } else if (isNextPieceStuck() && !isBoardPerfect()) {
+                deadEndsDetected++;
+                deadEnds.add(board.getHash() ^ hashState(null, 0, holdPieceColour));
+
+                if (canBacktrack()) {
+                    backtrack();
+                } else {
+                    resets++;
+                    resetBoard();
+                }
             }
+        } else {
+            // Otherwise, check if the board is perfect
+            if (isBoardPerfect()) {
+                System.out.println("Perfect core.Board " + pieceCount);
+                perfectBoards++;
+                shouldSaveAndResetBoard = true;
+
+            } else {
+                // The current Piece couldn't go anywhere, so the Board and the queue with it at the front lead to a
+                // dead end
+                deadEnds.add(board.getHash() ^ hashState(currentPiece.pieceColour, 0, holdPieceColour));
+
+                if (canBacktrack()) {
+                    // The Piece that couldn't be placed goes back in the queue to be tried again after backtracking
+                    currentPieceList.add(0, currentPiece.pieceColour);
+                    backtrack();
+                } else {
+                    resets++;
+                    resetBoard();
+                }
+            }
+
+
+//            throw new RuntimeException("Piece can't be placed");
+        }
+    }
+
+    /**
+     * Tries the Piece the current Piece would be swapped with if it was held, which is the held Piece or, if nothing
+     * is held, the next Piece in the queue. If it has a better candidate than the current Piece then the current
+     * Piece is held and the other Piece becomes the current Piece, otherwise everything is left as it was
+     *
+     * @param currentPieceFound true if the current Piece has a candidate in bestCandidate
+     * @return true if the current Piece was held, false otherwise
+     */
+    private boolean tryHeldPiece(boolean currentPieceFound) {
+        // If nothing is held and the queue is empty then the next Piece isn't known yet
+        if (holdPieceColour == null && currentPieceList.isEmpty()) return false;
+
+        PieceColour swapColour = holdPieceColour != null ? holdPieceColour : currentPieceList.get(0);
+        // If nothing is held then holding takes the next Piece out of the queue
+        int takenFromQueue = holdPieceColour == null ? 1 : 0;
+
+        if (currentPieceFound) currentPieceCandidate.copyFrom(bestCandidate);
+        Piece piece = currentPiece;
+        currentPiece = new Piece(board, swapColour, pieceStartX, pieceStartY);
+
+        if (findBestCandidate(hashState(null, takenFromQueue, piece.pieceColour), takenFromQueue) &&
+                (!currentPieceFound || bestCandidate.score < currentPieceCandidate.score)) {
+            if (takenFromQueue == 1) currentPieceList.remove(0);
+            holdPieceColour = piece.pieceColour;
+            canHold = false;
+            holds++;
+
+            return true;
         }
 
-        return true;
+        // The current Piece is at least as good, put it back
+        currentPiece = piece;
+        if (currentPieceFound) bestCandidate.copyFrom(currentPieceCandidate);
+
+        return false;
     }
 
-    static void simulateCurrentPiece() {
-        // TODO: Move getting all possible Piece positions into another function
+    /**
+     * Tries every position and rotation of the current Piece and keeps the best one in bestCandidate. Candidates are
+     * scored as they are found and only the best one so far is kept. When several candidates share the best score,
+     * one of them is picked uniformly at random by reservoir sampling. The board is left as it was
+     *
+     * @return true if a candidate was found, false if the current Piece can't be placed anywhere
+     */
+    boolean findBestCandidate() {
+        return findBestCandidate(hashState(null, 0, holdPieceColour), 0);
+    }
 
-        // Calculate the number of times we need to rotate the piece
-        int numberOfTimesToRotate;
-        switch (currentPiece.pieceColour) {
-            case I:
-                numberOfTimesToRotate = 1;
-                break;
-            case O:
-                numberOfTimesToRotate = 0;
-                break;
-            default:
-                numberOfTimesToRotate = 3;
-                break;
+    /**
+     * @param queueHash  Hash of the queue and held Piece after the current Piece is placed, used to look candidates up
+     *                   in the dead end cache
+     * @param queueStart Index of the Piece in the queue that comes after the current Piece, used by the lookahead
+     * @return true if a candidate was found, false if the current Piece can't be placed anywhere
+     * @see Board#findBestCandidate()
+     */
+    private boolean findBestCandidate(long queueHash, int queueStart) {
+        if (parallelSearch != null) {
+            bestCandidateCount = parallelSearch.search(currentPiece.pieceColour, queueHash, random, bestCandidate) ?
+                    1 : 0;
+            return bestCandidateCount != 0;
         }
 
-        ArrayList<PotentialBoardState> allOptions = new ArrayList<>();
+        // Calculate the number of times we need to rotate the piece, once for each distinct orientation
+        int numberOfTimesToRotate = PieceOrientation.getOrientationCount(currentPiece.pieceColour) - 1;
+
+        bestCandidateCount = 0;
+        if (lookahead != null) lookahead.clear();
 
         // Repeat for all rotations
         for (int rotateCount = 0; rotateCount <= numberOfTimesToRotate; rotateCount++) {
-            // Move the piece so it is flush with the top left side of the board
-            currentPiece.boardX = Math.abs(currentPiece.minXOffset);
-            // Every time we drop the Piece, we need to reset it so that it's flush with the top of the board
-            int yReset = board.height - 1 - currentPiece.maxYOffset;
+            // Move the piece along the board, from flush with the left side to flush with the right side
+            int firstX = -currentPiece.orientation.minXOffset;
+            int lastX = board.width - 1 - currentPiece.orientation.maxXOffset;
+
+            for (int x = firstX; x <= lastX; x++) {
+                // If this placement has been backtracked out of before, don't try it again
+                if (history.isExcluded(currentPiece.orientation, x)) continue;
+
+                // If the candidate can't be as good as the best candidate so far, don't place it. Candidates with the
+                // same score as the best are never skipped, so ties are picked between exactly as before. The
+                // lookahead keeps more than the best candidate, so it doesn't skip any
+                if (lookahead == null && bestCandidateCount != 0 &&
+                        scoringStrategy.lowerBound(this, currentPiece.orientation, x) > bestCandidate.score) {
+                    candidatesPruned++;
+                    continue;
+                }
 
+                currentPiece.boardX = x;
 
-            // If the I piece is vertical such that its center block is to the left of the piece, start the center block
-            // at -1 so that the line piece is flush with the left side of the board
-            if (currentPiece.pieceColour == PieceColour.I && rotateCount == 1) currentPiece.boardX = -1;
+                // Hard drop the piece
+                currentPiece.hardDropPiece();
 
-            // For the first piece, start it at the top of the board, at the end of the loop this will happen for the
-            // piece after it
-            currentPiece.boardY = yReset;
-            // Repeat while the edge of the piece hasn't reached the edge of the board
-            do {
+                // If the Piece would stick out of the top of the board then it can't be placed here
+                if (currentPiece.boardY + currentPiece.orientation.maxYOffset > board.height - 1) continue;
 
-                // If where the Piece spawns is obstructed then continue the loop to move it right, don't try and
-                // simulate the hard drop
-                if (!currentPiece.wouldNewCenterBeValid(currentPiece.boardX, currentPiece.boardY)) {
-                    continue;
-                }
+                assert currentPiece.boardY == currentPiece.findLandingRowStepwise() :
+                        "Hard drop landed on row " + currentPiece.boardY + ", stepwise drop landed on row " +
+                                currentPiece.findLandingRowStepwise();
 
-                // Otherwise, hard drop the piece
-                currentPiece.hardDropPiece();
+                // Only placements that keep the Board within its hole budget are candidates. This is checked from the
+                // column heights so the Piece doesn't need to be placed first
+                if (!isWithinHoleBudget(currentPiece)) continue;
+                if (!keepsHeightDiffReachable(currentPiece.orientation, x, currentPiece.boardY)) continue;
 
-                // Place the Piece on the board
+                // Place the Piece on the board so the board's bumpiness and height difference include it
                 currentPiece.placePieceOnBoard();
 //                if (Window.debug) System.out.println(board);
 
-                // If the board doesn't contain any holes after the piece has been placed then add the board state
-                // into the list of candidates
-                if (!doColumnsContainHoles(currentPiece.whatColumsIsThisPieceInWithPaddingColumns()))
-                    allOptions.add(new PotentialBoardState(currentPiece.pieceColour, currentPiece.boardX,
-                            currentPiece.boardY, rotateCount, calculateBoardHeightDiff()));
+                assert holeBudget > 0 || !doColumnsContainHoles(currentPiece) : "Candidate left a hole\n" + board;
+
+                // Skip candidates that are already known to lead to a dead end
+                if (deadEnds.contains(board.getHash() ^ queueHash)) {
+                    currentPiece.removePieceOnBoard();
+                    continue;
+                }
+
+                candidate.set(currentPiece.orientation, currentPiece.boardX, currentPiece.boardY);
+                candidatesScored++;
+
+                // With lookahead the candidates are only narrowed down here, the best one is picked afterwards
+                if (lookahead != null) {
+                    lookahead.offer(candidate);
+                } else {
+                    considerCandidate(candidate);
+                }
+
+                if (Window.logging) System.out.println(candidate);
 
                 currentPiece.removePieceOnBoard();
 //                if (Window.debug) System.out.println(board);
-
-                currentPiece.boardY = yReset;
-            } while (currentPiece.movePieceRight());
+            }
 
             currentPiece.rotatePieceClockwise();
         }
 
-        // Now that all positions have been simulated, we need to pick a position to use
-        PotentialBoardState bestCandidate = pickCandidate(allOptions);
+        if (lookahead != null) {
+            bestCandidateCount = lookahead.search(currentPieceList, queueStart, bestCandidate) ? 1 : 0;
+        }
 
         if (Window.logging) {
-            for (PotentialBoardState state : allOptions) {
-                System.out.println(state);
-            }
+            System.out.println("Best candidate: " + (bestCandidateCount == 0 ? null : bestCandidate));
+        }
 
-            System.out.println("Best candidate: " + bestCandidate);
+        return bestCandidateCount != 0;
+    }
+
+    /**
+     * Records the current Piece's placement on the undo stack
+     *
+     * @param completedGoal Tower goal the placement completed, or null
+     * @param usedHold      true if the Piece that was due to be placed was held instead
+     * @param previousHold  Piece that was held before the placement, or null
+     */
+    private void recordPlacement(TowerGoal completedGoal, boolean usedHold, PieceColour previousHold) {
+        history.push(currentPiece.orientation, currentPiece.boardX, currentPiece.boardY, completedGoal, usedHold,
+                previousHold);
+        deepestPlacement = Math.max(deepestPlacement, history.size());
+
+        // Once the Board has placed more Pieces than it had when it got stuck, it's out of the dead end
+        if (backtrackStartPlacement != -1 && history.size() > backtrackStartPlacement) {
+            resetsAvoided++;
+            backtrackStartPlacement = -1;
         }
+    }
 
-        if (bestCandidate != null) {
-            bestCandidate.getPlacedPiece().placePieceOnBoard();
-            pieceCount++;
+    /**
+     * @return true if there is a placement to take back without going back more than the backtrack depth from the
+     * most Pieces placed since the last reset, false otherwise
+     */
+    private boolean canBacktrack() {
+        return Window.argBacktrackDepth > 0 && history.size() > 0 &&
+                history.size() > deepestPlacement - Window.argBacktrackDepth;
+    }
 
-            // If we are making Towers then check if we have reached the current goal
-            if (Window.heightDiff != 0) {
-                // If the placed Piece is close to the current Tower goal
-                if (Window.dist(bestCandidate.pieceX, bestCandidate.pieceY, currentTowerGoal.getBoardX(),
-                        currentTowerGoal.getBoardY()) < 2) {
-                    // Then this Tower is complete, we can remove it from the list
-                    towerGoals.remove(0);
+    /**
+     * Hashes the held Piece and the Pieces waiting in the queue by XORing the key of each Piece at its position.
+     * Together with the hash of the board this identifies a state, as far as the Pieces that are already known
+     *
+     * @param firstPiece    Piece to hash in front of the queue, or null to hash just the queue
+     * @param skippedPieces Number of Pieces at the front of the queue to leave out
+     * @param heldPiece     Held Piece, or null if nothing is held
+     * @return Hash of the queue and held Piece
+     */
+    private long hashState(PieceColour firstPiece, int skippedPieces, PieceColour heldPiece) {
+        long hash = heldPiece == null ? 0 : holdKeys[heldPiece.ordinal()];
+        int position = 0;
 
-                    // If there are no Towers left to make, move onto the heightDiff phase
-                    if (towerGoals.isEmpty()) {
-                        // TODO: Add height difference phase
-                        System.out.println("Height diff phase");
-                        Window.placePieces = false;
-                    } else {
-                        // Otherwise, there are still Towers to create, so we should set the next Tower goal as our
-                        // current goal
-                        currentTowerGoal = towerGoals.get(0);
-                    }
-                }
-            }
-        } else {
-            // Otherwise, check if the board is perfect
-            if (isBoardPerfect()) {
-                System.out.println("Perfect core.Board " + pieceCount);
-                Window.shouldSaveAndResetBoard = true;
+        if (firstPiece != null) hash ^= queueKeys[position++][firstPiece.ordinal()];
 
-            } else {
-                resetBoard();
-            }
+        for (int i = skippedPieces; i < currentPieceList.size() && position < HASHED_QUEUE_LENGTH; i++) {
+            hash ^= queueKeys[position++][currentPieceList.get(i).ordinal()];
+        }
 
+        return hash;
+    }
 
-//            throw new RuntimeException("Piece can't be placed");
+    /**
+     * Checks if the next Piece in the queue has nowhere to go without leaving a hole. When holding is enabled the Piece
+     * it could be swapped with has to be stuck as well. A Piece that isn't known yet because the queue has run out is
+     * never treated as stuck, and neither is any Piece while the Board has holes left in its budget.
+     * <p>
+     * This is the only dead end check. Without holes every Piece sits flat on the skyline, and an upright I fits on
+     * every column below the top of the visible area, so no skyline can be unfillable by itself. Wells of any width or
+     * depth can still be filled, and the area and parity of the empty cells don't matter because Pieces can stack past
+     * the top of the visible area into the hidden rows. A Board only gets stuck when the Piece it is given has no flat
+     * place to land
+     *
+     * @return true if the next Piece can't be placed, false otherwise
+     */
+    private boolean isNextPieceStuck() {
+        if (getHolesLeft() > 0) return false;
+        if (currentPieceList.isEmpty() || board.canPlaceWithoutHoles(currentPieceList.get(0))) return false;
+        if (!Window.argHold) return true;
+
+        if (holdPieceColour != null) return !board.canPlaceWithoutHoles(holdPieceColour);
+
+        return currentPieceList.size() > 1 && !board.canPlaceWithoutHoles(currentPieceList.get(1));
+    }
+
+    /**
+     * Takes the last placed Piece off the Board and puts it at the front of the queue, so that it is simulated again
+     * without the position it was in
+     */
+    void backtrack() {
+        if (backtrackStartPlacement == -1) backtrackStartPlacement = history.size();
+        backtracks++;
+
+        Piece lastPiece = new Piece(board, history.getLastOrientation(), history.getLastX(), history.getLastY());
+        lastPiece.removePieceOnBoard();
+        recordChangedCells(lastPiece);
+        pieceCount--;
+
+        // Put the Tower goal the Piece completed back
+        TowerGoal completedGoal = history.getLastCompletedGoal();
+        if (completedGoal != null) {
+            towerGoals.add(0, completedGoal);
+            setHeightDiffPhase(false);
+            currentTowerGoal = completedGoal;
+        }
+
+        // Put the Pieces back the way they were before the placement
+        if (history.getLastUsedHold()) {
+            PieceColour heldColour = holdPieceColour;
+            holdPieceColour = history.getLastPreviousHold();
+
+            // If nothing was held before then the placed Piece came from the queue, otherwise it was the held Piece
+            if (holdPieceColour == null) currentPieceList.add(0, lastPiece.pieceColour);
+            currentPieceList.add(0, heldColour);
+        } else {
+            currentPieceList.add(0, lastPiece.pieceColour);
         }
+
+        history.popAndExclude();
     }
 
     /**
-     * Returns the best candidate from a list of potential board state. If there are candidates that are equally good then
-     * they'll be picked randomly from the set of the best candidates
+     * Remembers the cells of a Piece that has just been placed or removed, so the next snapshot carries them. Once more
+     * cells have changed than the visible board holds, the whole board is redrawn instead
      *
-     * @param candidates All potential board states
-     * @return Best candidate
+     * @param piece Piece that was placed or removed
      */
-    static private PotentialBoardState pickCandidate(ArrayList<PotentialBoardState> candidates) {
-        if (candidates.size() == 0) return null;
+    private void recordChangedCells(Piece piece) {
+        if (!trackChangedCells || fullRedrawNeeded) return;
 
-        // If there are equally good candidates, they'll be put in this list
-        ArrayList<PotentialBoardState> filteredCandidates = new ArrayList<>();
-        float lowestScore = Integer.MAX_VALUE;
-        for (PotentialBoardState state : candidates) {
-            if (state.score < lowestScore) lowestScore = state.score;
+        if (changedCellCount + 4 > board.width * board.visibleHeight) {
+            fullRedrawNeeded = true;
+            changedCellCount = 0;
+            return;
         }
 
-        for (PotentialBoardState state : candidates) {
-            if (state.score == lowestScore) filteredCandidates.add(state);
+        if (changedCellCount + 4 > changedCells.length) {
+            changedCells = Arrays.copyOf(changedCells, changedCells.length * 2);
         }
 
-        int randomNumber = random.nextInt(filteredCandidates.size());
-        return filteredCandidates.get(randomNumber);
+        for (int i = 0; i < 4; i++) {
+            int blockX = piece.orientation.xOffsets[i] + piece.boardX;
+            int blockY = piece.orientation.yOffsets[i] + piece.boardY;
+            changedCells[changedCellCount++] = blockY * board.width + blockX;
+        }
+    }
+
+    /**
+     * @return true if every cell has to be redrawn, false if only the changed cells do
+     */
+    boolean isFullRedrawNeeded() {
+        return fullRedrawNeeded;
+    }
+
+    /**
+     * @return Number of cells changed since the last snapshot, a cell can be counted more than once
+     */
+    int getChangedCellCount() {
+        return changedCellCount;
+    }
+
+    /**
+     * @param index Index of the change, from 0 to {@link Board#getChangedCellCount()} - 1
+     * @return Cell that changed, packed as y * width + x
+     */
+    int getChangedCell(int index) {
+        return changedCells[index];
+    }
+
+    /**
+     * Forgets the changed cells once a snapshot has copied them
+     */
+    void clearChangedCells() {
+        changedCellCount = 0;
+        fullRedrawNeeded = false;
+    }
+
+    /**
+     * @return Strategy the candidates of this Board are currently scored with
+     */
+    ScoringStrategy getScoringStrategy() {
+        return scoringStrategy;
+    }
+
+    /**
+     * Keeps a candidate if it is better than the best candidate found so far. If it is as good as the best candidate
+     * then it replaces it with a probability of 1 / (number of candidates with that score), which leaves every
+     * candidate with the best score equally likely to be picked
+     *
+     * @param state Candidate to consider, it is copied rather than kept
+     */
+    private void considerCandidate(PotentialBoardState state) {
+        if (bestCandidateCount == 0 || state.score < bestCandidate.score) {
+            bestCandidate.copyFrom(state);
+            bestCandidateCount = 1;
+        } else if (state.score == bestCandidate.score) {
+            bestCandidateCount++;
+            if (random.nextInt(bestCandidateCount) == 0) bestCandidate.copyFrom(state);
+        }
     }
 
 
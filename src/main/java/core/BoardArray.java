@@ -1,9 +1,56 @@
 package core;
 
+import core.Piece.PieceColour;
+
+import java.util.Arrays;
+
+/**
+ * Holds the Blocks on the board. Each cell is stored as a byte index into a palette of colours rather than as a Block
+ * object, index 0 is an empty cell and the Piece colours come next in {@link PieceColour} order. Occupancy is also
+ * kept as a bitboard, each row is packed into long words with one bit per column, so collision and hole checks are
+ * mask operations instead of cell lookups.
+ * <p>
+ * The height of every column (the skyline), the bumpiness and total well depth of the skyline and the lowest and
+ * highest column are kept up to date as Blocks are set, so they never need to be calculated by scanning the board.
+ * The number of Blocks in each column is kept as well, every cell under the top of a column that isn't a Block is a
+ * hole, so the number of holes is the total height of the columns minus the number of Blocks.
+ * <p>
+ * A Zobrist hash of the occupancy is also kept up to date, each cell has a pseudo-random key which is XORed into the
+ * hash when the cell is filled and XORed out again when it is emptied. Keys are mixed from the cell index when they are
+ * needed rather than stored, so they cost no memory. Colours aren't part of the hash
+ */
 public class BoardArray {
-    private Block[][] array;
+    // Palette index of every cell. Row y (board focused, 0 is the bottom row) starts at index y * width
+    private byte[] cells;
+    // Colour of each palette index. Blocks with colours other than the Piece colours are added to the end
+    private Block[] palette;
+    private int paletteSize;
     private int offset;
 
+    // Occupancy bitboard. Row y (board focused, 0 is the bottom row) starts at index y * wordsPerRow and column x is
+    // bit x % 64 of word x / 64 in that row
+    private long[] occupancy;
+    private int wordsPerRow;
+
+    // Number of rows from the bottom of each column up to and including its highest Block, 0 for an empty column
+    private int[] columnHeights;
+    // Number of columns with each height, used to find the new lowest or highest column when one changes
+    private int[] heightCounts;
+    // Sum of the height differences between neighbouring columns
+    private int bumpiness;
+    // Sum of the depths of every well, see wellDepth
+    private int wellDepth;
+    // Number of Blocks on the board and the sum of the column heights
+    private int blockCount;
+    private int totalColumnHeight;
+    private int minColumnHeight;
+    private int maxColumnHeight;
+
+    // Seed of the Zobrist keys, fixed so that boards of the same size hash the same way
+    private static final long ZOBRIST_SEED = 0x5DEECE66DL;
+    // XOR of the keys of every occupied cell
+    private long hash;
+
     int height;
     int visibleHeight;
     int width;
@@ -13,47 +60,541 @@ public class BoardArray {
         offset = Window.max(height / 4, 10);
 //        offset = 20;
 
-        array = new Block[height + offset][width];
         this.height = height + offset;
         this.visibleHeight = height;
         this.width = width;
+
+        cells = new byte[this.height * width];
+
+        palette = new Block[256];
+        paletteSize = 1;
+        for (PieceColour pieceColour : PieceColour.values()) {
+            palette[paletteSize++] = new Block(pieceColour.r, pieceColour.g, pieceColour.b);
+        }
+
+        wordsPerRow = (width + 63) >>> 6;
+        occupancy = new long[this.height * wordsPerRow];
+
+        columnHeights = new int[width];
+        heightCounts = new int[this.height + 1];
+        heightCounts[0] = width;
+    }
+
+    /**
+     * @param y core.Board focused row index
+     * @return Index of the first occupancy word of the row
+     */
+    private int rowIndex(int y) {
+        return y * wordsPerRow;
     }
 
     /**
-     * Transforms the y index from being array focused (index 0 is the top row of the board, the 0th array) to being
-     * core.Board focused (index 0 is the bottom row of the board)
+     * @param y core.Board focused row index
+     * @return Index of the first cell of the row
+     */
+    private int cellIndex(int y) {
+        return y * width;
+    }
+
+    /**
+     * Zobrist key of a cell, mixed from its index with the SplitMix64 finaliser so every cell gets an unrelated key
      *
-     * @param y Y index to transform
-     * @return core.Board focused y index
+     * @param cellIndex Index of the cell in cells
+     * @return Key of the cell
      */
-    private int getY(int y) {
-        return height - 1 - y;
+    private static long cellKey(int cellIndex) {
+        long key = ZOBRIST_SEED + cellIndex * 0x9E3779B97F4A7C15L;
+        key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+        key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+        return key ^ (key >>> 31);
     }
 
+    /**
+     * Gets the Block at a position. The Block is a view of the cell's palette colour and is shared by every cell with
+     * that colour, so it must not be modified. Use {@link BoardArray#set(int, int, Block)} to change a colour
+     *
+     * @return The Block at the position, or null if the cell is empty
+     */
     public Block getBlock(int x, int y) {
-        return array[getY(y)][x];
+        return palette[cells[cellIndex(y) + x] & 0xFF];
+    }
+
+    /**
+     * @return Palette index of the cell at the position, 0 if the cell is empty
+     */
+    int getPaletteIndex(int x, int y) {
+        return cells[cellIndex(y) + x] & 0xFF;
+    }
+
+    /**
+     * @param paletteIndex Palette index of a cell, not 0
+     * @return Colour of the palette index
+     */
+    Block getPaletteColour(int paletteIndex) {
+        return palette[paletteIndex];
     }
 
+    /**
+     * Sets the cell at a position to the colour of a Block. The Block itself isn't stored, only its colour
+     *
+     * @param block Block to copy the colour from, or null to empty the cell
+     */
     public void set(int x, int y, Block block) {
-        array[getY(y)][x] = block;
+        setPaletteIndex(x, y, block == null ? 0 : findPaletteIndex(block));
+    }
+
+    /**
+     * Sets the cell at a position to the colour of a Piece
+     */
+    void setPieceColour(int x, int y, PieceColour pieceColour) {
+        setPaletteIndex(x, y, pieceColour.ordinal() + 1);
+    }
+
+    /**
+     * Finds the palette index of a Block's colour, adding the colour to the palette if it isn't already in it
+     *
+     * @return Palette index of the colour
+     */
+    private int findPaletteIndex(Block block) {
+        for (int i = 1; i < paletteSize; i++) {
+            if (palette[i].r == block.r && palette[i].g == block.g && palette[i].b == block.b) return i;
+        }
+
+        if (paletteSize == palette.length) {
+            throw new RuntimeException("core.BoardArray can't hold more than " + (palette.length - 1) + " colours");
+        }
+
+        palette[paletteSize] = new Block(block.r, block.g, block.b);
+        return paletteSize++;
+    }
+
+    private void setPaletteIndex(int x, int y, int paletteIndex) {
+        cells[cellIndex(y) + x] = (byte) paletteIndex;
+
+        int word = rowIndex(y) + (x >>> 6);
+
+        // Only a change in occupancy changes the hash and the Block counts, recolouring a Block doesn't
+        if ((paletteIndex != 0) != ((occupancy[word] & (1L << x)) != 0)) {
+            hash ^= cellKey(cellIndex(y) + x);
+
+            blockCount += paletteIndex != 0 ? 1 : -1;
+        }
+
+        if (paletteIndex == 0) {
+            occupancy[word] &= ~(1L << x);
+
+            // If the highest Block of the column was removed, move down the column to find the next highest Block
+            if (y + 1 == columnHeights[x]) {
+                int newHeight = y;
+                while (newHeight > 0 && !isOccupied(x, newHeight - 1)) newHeight--;
+
+                setColumnHeight(x, newHeight);
+            }
+        } else {
+            occupancy[word] |= 1L << x;
+
+            if (y + 1 > columnHeights[x]) setColumnHeight(x, y + 1);
+        }
+    }
+
+    /**
+     * Changes the height of a column and updates the bumpiness, well depth and the lowest and highest column heights to
+     * match
+     *
+     * @param x      Index of the column
+     * @param height New height of the column
+     */
+    private void setColumnHeight(int x, int height) {
+        int oldHeight = columnHeights[x];
+
+        // Only the wells of the column and its neighbours change
+        int firstWell = Math.max(x - 1, 0);
+        int lastWell = Math.min(x + 1, width - 1);
+        for (int column = firstWell; column <= lastWell; column++) {
+            wellDepth -= wellDepth(column);
+        }
+
+        // Only the differences with the neighbouring columns change
+        if (x > 0) {
+            bumpiness += Math.abs(height - columnHeights[x - 1]) - Math.abs(oldHeight - columnHeights[x - 1]);
+        }
+        if (x < width - 1) {
+            bumpiness += Math.abs(height - columnHeights[x + 1]) - Math.abs(oldHeight - columnHeights[x + 1]);
+        }
+
+        columnHeights[x] = height;
+        totalColumnHeight += height - oldHeight;
+        heightCounts[oldHeight]--;
+        heightCounts[height]++;
+
+        for (int column = firstWell; column <= lastWell; column++) {
+            wellDepth += wellDepth(column);
+        }
+
+        if (height > maxColumnHeight) maxColumnHeight = height;
+        if (height < minColumnHeight) minColumnHeight = height;
+
+        // If this was the only column at the lowest or highest height, find the next lowest or highest height
+        while (heightCounts[maxColumnHeight] == 0) maxColumnHeight--;
+        while (heightCounts[minColumnHeight] == 0) minColumnHeight++;
+    }
+
+    /**
+     * A well is a column that is lower than both of its neighbours, the side of the board counts as a neighbour that
+     * is higher than any column
+     *
+     * @param x Index of the column
+     * @return Number of rows the column would have to rise to reach the lower of its neighbours, 0 if it isn't a well
+     */
+    private int wellDepth(int x) {
+        if (width == 1) return 0;
+
+        int left = x > 0 ? columnHeights[x - 1] : Integer.MAX_VALUE;
+        int right = x < width - 1 ? columnHeights[x + 1] : Integer.MAX_VALUE;
+
+        return Math.max(Math.min(left, right) - columnHeights[x], 0);
+    }
+
+    /**
+     * @param x Index of the column
+     * @return Number of rows from the bottom of the column up to and including its highest Block, 0 if the column is
+     * empty
+     */
+    int getColumnHeight(int x) {
+        return columnHeights[x];
+    }
+
+    /**
+     * @return Sum of the height differences between all neighbouring columns
+     */
+    int getBumpiness() {
+        return bumpiness;
+    }
+
+    /**
+     * @return Number of holes in the board, a hole being an empty cell with a Block somewhere above it
+     */
+    int getHoleCount() {
+        return totalColumnHeight - blockCount;
+    }
+
+    /**
+     * @return Sum of the depths of every well
+     */
+    int getWellDepth() {
+        return wellDepth;
+    }
+
+    /**
+     * @return Height of the lowest column
+     */
+    int getMinColumnHeight() {
+        return minColumnHeight;
+    }
+
+    /**
+     * @return Height of the highest column
+     */
+    int getMaxColumnHeight() {
+        return maxColumnHeight;
+    }
+
+    /**
+     * Checks if a Piece could be hard dropped anywhere on the board without leaving a hole under it or sticking out of
+     * the top. Only the column heights are used, so each orientation costs O(width)
+     *
+     * @param pieceColour Piece to check
+     * @return true if at least one orientation and position is free of holes, false otherwise
+     */
+    boolean canPlaceWithoutHoles(PieceColour pieceColour) {
+        PieceOrientation orientation = PieceOrientation.getSpawnOrientation(pieceColour);
+
+        for (int i = 0; i < PieceOrientation.getOrientationCount(pieceColour); i++) {
+            if (canPlaceWithoutHoles(orientation)) return true;
+
+            orientation = orientation.getClockwiseRotation();
+        }
+
+        return false;
+    }
+
+    private boolean canPlaceWithoutHoles(PieceOrientation orientation) {
+        int pieceWidth = orientation.getWidth();
+
+        for (int firstColumn = 0; firstColumn + pieceWidth <= width; firstColumn++) {
+            // The lowest block in every column of the Piece has to sit directly on top of that column
+            int landingRow = columnHeights[firstColumn] - orientation.columnBottoms[0];
+            boolean fits = landingRow + orientation.maxYOffset <= height - 1;
+
+            for (int column = 1; fits && column < pieceWidth; column++) {
+                fits = columnHeights[firstColumn + column] - orientation.columnBottoms[column] == landingRow;
+            }
+
+            if (fits) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return Zobrist hash of the occupied cells, 0 for an empty board
+     */
+    long getHash() {
+        return hash;
+    }
+
+    // The methods below work out what the board would be like with a Piece placed on it, without placing it. They only
+    // read the board, so several threads can call them at once as long as nothing is changing the board. The Piece is
+    // given by its orientation and the position of its center, and must not leave any holes, so the new height of
+    // each of its columns is one above the highest block the Piece has in that column
+
+    /**
+     * @return Zobrist hash the board would have with the Piece placed
+     */
+    long getHashWith(PieceOrientation orientation, int pieceX, int pieceY) {
+        long hashWith = hash;
+        for (int i = 0; i < 4; i++) {
+            hashWith ^= cellKey(cellIndex(orientation.yOffsets[i] + pieceY) + orientation.xOffsets[i] + pieceX);
+        }
+
+        return hashWith;
+    }
+
+    /**
+     * @return Bumpiness the board would have with the Piece placed
+     */
+    int getBumpinessWith(PieceOrientation orientation, int pieceX, int pieceY) {
+        int firstColumn = pieceX + orientation.minXOffset;
+        int lastColumn = firstColumn + orientation.getWidth() - 1;
+        int bumpinessWith = bumpiness;
+
+        // Only the differences between a column of the Piece and the column to its left change, plus the difference
+        // between the rightmost column of the Piece and the column to its right
+        for (int x = Math.max(firstColumn, 1); x <= Math.min(lastColumn + 1, width - 1); x++) {
+            int heightWith = heightWith(orientation, pieceY, firstColumn, lastColumn, x);
+            int leftHeightWith = heightWith(orientation, pieceY, firstColumn, lastColumn, x - 1);
+
+            bumpinessWith += Math.abs(heightWith - leftHeightWith) - Math.abs(columnHeights[x] - columnHeights[x - 1]);
+        }
+
+        return bumpinessWith;
+    }
+
+    /**
+     * @return Sum of the depths of every well the board would have with the Piece placed
+     */
+    int getWellDepthWith(PieceOrientation orientation, int pieceX, int pieceY) {
+        int firstColumn = pieceX + orientation.minXOffset;
+        int lastColumn = firstColumn + orientation.getWidth() - 1;
+        int wellDepthWith = wellDepth;
+
+        if (width == 1) return 0;
+
+        // Only the wells of the Piece's columns and the columns either side of it change
+        for (int x = Math.max(firstColumn - 1, 0); x <= Math.min(lastColumn + 1, width - 1); x++) {
+            int left = x > 0 ? heightWith(orientation, pieceY, firstColumn, lastColumn, x - 1) : Integer.MAX_VALUE;
+            int right = x < width - 1 ?
+                    heightWith(orientation, pieceY, firstColumn, lastColumn, x + 1) : Integer.MAX_VALUE;
+            int heightWith = heightWith(orientation, pieceY, firstColumn, lastColumn, x);
+
+            wellDepthWith += Math.max(Math.min(left, right) - heightWith, 0) - wellDepth(x);
+        }
+
+        return wellDepthWith;
+    }
+
+    /**
+     * @return Height of the highest column the board would have with the Piece placed
+     */
+    int getMaxColumnHeightWith(PieceOrientation orientation, int pieceX, int pieceY) {
+        int firstColumn = pieceX + orientation.minXOffset;
+        int lastColumn = firstColumn + orientation.getWidth() - 1;
+
+        int maxHeightWith = maxColumnHeight;
+        for (int x = firstColumn; x <= lastColumn; x++) {
+            maxHeightWith = Math.max(maxHeightWith, heightWith(orientation, pieceY, firstColumn, lastColumn, x));
+        }
+
+        return maxHeightWith;
+    }
+
+    /**
+     * @return Height of the lowest column the board would have with the Piece placed
+     */
+    int getMinColumnHeightWith(PieceOrientation orientation, int pieceX, int pieceY) {
+        int firstColumn = pieceX + orientation.minXOffset;
+        int lastColumn = firstColumn + orientation.getWidth() - 1;
+
+        // Find the lowest height that some column would still have. Placing the Piece only raises its own columns, so
+        // the counts of the other heights are only changed by the Piece's columns moving from one height to another
+        int minHeightWith = minColumnHeight;
+        while (true) {
+            int count = heightCounts[minHeightWith];
+            for (int x = firstColumn; x <= lastColumn; x++) {
+                if (columnHeights[x] == minHeightWith) count--;
+                if (heightWith(orientation, pieceY, firstColumn, lastColumn, x) == minHeightWith) count++;
+            }
+
+            if (count > 0) return minHeightWith;
+            minHeightWith++;
+        }
+    }
+
+    /**
+     * @return Bumpiness of the board leaving out the differences that involve any of the columns from firstColumn to
+     * lastColumn, which are the only differences placing a Piece in those columns can change
+     */
+    int getBumpinessOutside(int firstColumn, int lastColumn) {
+        int bumpinessOutside = bumpiness;
+        for (int x = Math.max(firstColumn, 1); x <= Math.min(lastColumn + 1, width - 1); x++) {
+            bumpinessOutside -= Math.abs(columnHeights[x] - columnHeights[x - 1]);
+        }
+
+        return bumpinessOutside;
+    }
+
+    /**
+     * @return A height difference that the board will have at least with the Piece placed without holes. The Piece
+     * lands on its leftmost column and can only raise the highest column. The lowest column stays where it is if more
+     * columns are at that height than the Piece covers, otherwise 0 is returned
+     */
+    int getHeightDiffLowerBound(PieceOrientation orientation, int pieceX) {
+        if (heightCounts[minColumnHeight] <= orientation.getWidth()) return 0;
+
+        int firstColumn = pieceX + orientation.minXOffset;
+        int pieceTop = columnHeights[firstColumn] - orientation.columnBottoms[0] + orientation.maxYOffset + 1;
+
+        return Math.max(maxColumnHeight, pieceTop) - minColumnHeight;
+    }
+
+    /**
+     * @return Well depth of the board leaving out the wells of the columns from firstColumn to lastColumn and the
+     * columns either side of them, which are the only wells placing a Piece in those columns can change
+     */
+    int getWellDepthOutside(int firstColumn, int lastColumn) {
+        int wellDepthOutside = wellDepth;
+        for (int x = Math.max(firstColumn - 1, 0); x <= Math.min(lastColumn + 1, width - 1); x++) {
+            wellDepthOutside -= wellDepth(x);
+        }
+
+        return wellDepthOutside;
+    }
+
+    /**
+     * @return Height column x would have with the Piece placed, the Piece covers firstColumn to lastColumn
+     */
+    private int heightWith(PieceOrientation orientation, int pieceY, int firstColumn, int lastColumn, int x) {
+        if (x < firstColumn || x > lastColumn) return columnHeights[x];
+
+        return pieceY + orientation.columnTops[x - firstColumn] + 1;
+    }
+
+    /**
+     * @return true if there is a Block at the position, false otherwise
+     */
+    boolean isOccupied(int x, int y) {
+        return (occupancy[rowIndex(y) + (x >>> 6)] & (1L << x)) != 0;
     }
 
+    /**
+     * Removes every Block from the board
+     */
+    void clear() {
+        Arrays.fill(cells, (byte) 0);
+        Arrays.fill(occupancy, 0);
+
+        Arrays.fill(columnHeights, 0);
+        blockCount = 0;
+        totalColumnHeight = 0;
+        Arrays.fill(heightCounts, 0);
+        heightCounts[0] = width;
+        bumpiness = 0;
+        wellDepth = 0;
+        minColumnHeight = 0;
+        maxColumnHeight = 0;
+
+        hash = 0;
+    }
 
     /**
-     * Gets a row of Blocks form the core.BoardArray
-     * @param y Row index to get
-     * @return Line of Blocks at index y
+     * Removes the bottom rows of the board and moves every row above them down, the same way clearing full lines
+     * would. The rows must be under the top of every column, so every column keeps its shape and the skyline only
+     * moves down. Used to drop rows that have been written out when streaming a tall image
+     *
+     * @param rows Number of rows to remove, at most the height of the lowest column
+     * @return Number of holes that were in the removed rows
      */
-    Block[] getLine(int y) {
-        return array[y];
+    int dropBottomRows(int rows) {
+        if (rows <= 0) return 0;
+        if (rows > minColumnHeight) {
+            throw new IllegalArgumentException("Can't drop " + rows + " rows, the lowest column is " +
+                    minColumnHeight + " high");
+        }
+
+        int droppedBlocks = 0;
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < width; x++) {
+                if (cells[cellIndex(y) + x] != 0) droppedBlocks++;
+            }
+        }
+        blockCount -= droppedBlocks;
+
+        System.arraycopy(cells, cellIndex(rows), cells, 0, cells.length - cellIndex(rows));
+        Arrays.fill(cells, cells.length - cellIndex(rows), cells.length, (byte) 0);
+        System.arraycopy(occupancy, rowIndex(rows), occupancy, 0, occupancy.length - rowIndex(rows));
+        Arrays.fill(occupancy, occupancy.length - rowIndex(rows), occupancy.length, 0);
+
+        // Every column moves down by the same amount, so the bumpiness and well depths don't change
+        for (int x = 0; x < width; x++) {
+            columnHeights[x] -= rows;
+        }
+        System.arraycopy(heightCounts, rows, heightCounts, 0, heightCounts.length - rows);
+        Arrays.fill(heightCounts, heightCounts.length - rows, heightCounts.length, 0);
+        minColumnHeight -= rows;
+        maxColumnHeight -= rows;
+        totalColumnHeight -= rows * width;
+
+        // The keys belong to positions rather than Blocks, so every Block that moved has a new key
+        hash = 0;
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] != 0) hash ^= cellKey(i);
+        }
+
+        return rows * width - droppedBlocks;
+    }
+
+    /**
+     * Checks if a range of columns contain any holes, a hole being an empty cell with a Block somewhere above it.
+     * Every row is compared with the row below it, a Block with an empty cell underneath means the column has a hole
+     *
+     * @param fromColumn Index of the leftmost column to check
+     * @param toColumn   Index of the rightmost column to check
+     * @return true if any of the columns contain a hole, false otherwise
+     */
+    boolean doColumnsContainHoles(int fromColumn, int toColumn) {
+        int fromWord = fromColumn >>> 6;
+        int toWord = toColumn >>> 6;
+
+        for (int word = fromWord; word <= toWord; word++) {
+            long mask = -1L;
+            if (word == fromWord) mask &= -1L << fromColumn;
+            if (word == toWord) mask &= -1L >>> (63 - (toColumn & 63));
+
+            for (int y = 1; y < height; y++) {
+                if ((occupancy[rowIndex(y) + word] & ~occupancy[rowIndex(y - 1) + word] & mask) != 0) return true;
+            }
+        }
+
+        return false;
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
 
-        for (int j = 0; j < height; j++) {
-            for (Block block : array[j]) {
+        for (int j = height - 1; j >= 0; j--) {
+            for (int i = 0; i < width; i++) {
+                Block block = getBlock(i, j);
                 sb.append(block == null ? "." : block);
                 sb.append(" ");
             }
@@ -0,0 +1,78 @@
+package core;
+
+/**
+ * Features of a board with a candidate placed on it, which are what a {@link ScoringStrategy} scores. Every feature is
+ * read from the column heights the board keeps up to date, so extracting them doesn't scan the board. They are
+ * extracted once per candidate and can be scored by any number of strategies
+ */
+class BoardFeatures {
+    // Sum of the height differences between neighbouring columns
+    int bumpiness;
+    // Height difference between the highest and lowest column
+    int heightDiff;
+    // Sum of the depths of every well, a well being a column lower than both of its neighbours
+    int wellDepth;
+    // Number of rows at the bottom of the board that every column reaches. These rows are only all full when the board
+    // has no holes, with a hole budget some of them can have gaps
+    int filledRows;
+    // Number of columns between the Piece and the current Tower goal, 0 if there isn't a Tower goal
+    int goalDistance;
+
+    /**
+     * Extracts the features of a board that has the candidate placed on it
+     *
+     * @param board  Board with the Piece placed
+     * @param pieceX Column of the center of the Piece
+     */
+    void extract(Board board, int pieceX) {
+        BoardArray boardArray = board.board;
+
+        bumpiness = boardArray.getBumpiness();
+        heightDiff = boardArray.getMaxColumnHeight() - boardArray.getMinColumnHeight();
+        wellDepth = boardArray.getWellDepth();
+        filledRows = Math.min(boardArray.getMinColumnHeight(), boardArray.visibleHeight);
+        goalDistance = calculateGoalDistance(board, pieceX);
+    }
+
+    /**
+     * Extracts the features the board would have with the candidate placed, without placing it. The board is only
+     * read, so this can be called from several threads at once
+     *
+     * @param board       Board without the Piece placed
+     * @param orientation Orientation of the Piece
+     * @param pieceX      Column of the center of the Piece
+     * @param pieceY      Row of the center of the Piece
+     */
+    void extractWith(Board board, PieceOrientation orientation, int pieceX, int pieceY) {
+        BoardArray boardArray = board.board;
+        int minColumnHeight = boardArray.getMinColumnHeightWith(orientation, pieceX, pieceY);
+
+        bumpiness = boardArray.getBumpinessWith(orientation, pieceX, pieceY);
+        heightDiff = boardArray.getMaxColumnHeightWith(orientation, pieceX, pieceY) - minColumnHeight;
+        wellDepth = boardArray.getWellDepthWith(orientation, pieceX, pieceY);
+        filledRows = Math.min(minColumnHeight, boardArray.visibleHeight);
+        goalDistance = calculateGoalDistance(board, pieceX);
+    }
+
+    /**
+     * @return Number of columns between a Piece and the current Tower goal, 0 if there isn't a Tower goal
+     */
+    static int calculateGoalDistance(Board board, int pieceX) {
+        if (board.currentTowerGoal == null) return 0;
+
+        return Math.abs(board.currentTowerGoal.getBoardX() - pieceX);
+    }
+
+    void copyFrom(BoardFeatures other) {
+        bumpiness = other.bumpiness;
+        heightDiff = other.heightDiff;
+        wellDepth = other.wellDepth;
+        filledRows = other.filledRows;
+        goalDistance = other.goalDistance;
+    }
+
+    public String toString() {
+        return "HD : " + heightDiff + " | B : " + bumpiness + " | W : " + wellDepth + " | R : " + filledRows +
+                " | G : " + goalDistance;
+    }
+}
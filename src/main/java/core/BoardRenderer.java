@@ -0,0 +1,140 @@
+package core;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Renders a {@link BoardArray} into a {@link BufferedImage} without going through a Processing sketch. Used by the
+ * headless generator, where there is no window to draw to or save from.
+ * <p>
+ * Pixels are written straight into the image's int buffer. Each row of the board is written at one pixel per cell,
+ * then scaled up: each cell is filled across its span of the row and the row is copied down for the rest of the cell's
+ * height
+ */
+class BoardRenderer {
+    // Same grey the Window clears its background to
+    static final int BACKGROUND = 51;
+    private static final int BACKGROUND_COLOUR = colour(BACKGROUND, BACKGROUND, BACKGROUND);
+
+    /**
+     * Draws the visible part of the board, one square of cellDiameter pixels per Block
+     *
+     * @param board        Board to render
+     * @param cellDiameter Diameter of each Block in pixels
+     * @return Image of the board, with the bottom row of the board at the bottom of the image
+     */
+    static BufferedImage render(BoardArray board, int cellDiameter) {
+        BufferedImage image = new BufferedImage(board.width * cellDiameter, board.visibleHeight * cellDiameter,
+                BufferedImage.TYPE_INT_RGB);
+
+        render(board, cellDiameter, ((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+        return image;
+    }
+
+    /**
+     * Draws the visible part of the board into a buffer of opaque ARGB pixels, one row of the image after another
+     *
+     * @param board        Board to render
+     * @param cellDiameter Diameter of each Block in pixels
+     * @param pixels       Buffer to draw into, at least board.width * cellDiameter by board.visibleHeight *
+     *                     cellDiameter pixels
+     */
+    static void render(BoardArray board, int cellDiameter, int[] pixels) {
+        renderRows(board, 0, board.visibleHeight, cellDiameter, pixels);
+    }
+
+    /**
+     * Draws a band of rows of the board into a buffer of opaque ARGB pixels, one row of the image after another
+     *
+     * @param board        Board to render
+     * @param firstRow     Index of the lowest row of the band
+     * @param rowCount     Number of rows in the band
+     * @param cellDiameter Diameter of each Block in pixels
+     * @param pixels       Buffer to draw into, at least board.width * cellDiameter by rowCount * cellDiameter pixels.
+     *                     The lowest row of the band is drawn at the bottom
+     */
+    static void renderRows(BoardArray board, int firstRow, int rowCount, int cellDiameter, int[] pixels) {
+        int imageWidth = board.width * cellDiameter;
+
+        // Colour of every palette index, the empty index is the background
+        int[] colours = new int[256];
+        colours[0] = BACKGROUND_COLOUR;
+        for (int i = 1; i < colours.length; i++) {
+            Block block = board.getPaletteColour(i);
+            if (block != null) colours[i] = colour(block.r, block.g, block.b);
+        }
+
+        for (int j = 0; j < rowCount; j++) {
+            // The bottom row of the band is drawn at the bottom of the image
+            int firstPixel = (rowCount - 1 - j) * cellDiameter * imageWidth;
+
+            for (int i = 0; i < board.width; i++) {
+                pixels[firstPixel + i] = colours[board.getPaletteIndex(i, firstRow + j)];
+            }
+
+            upscaleRow(pixels, firstPixel, board.width, cellDiameter);
+        }
+    }
+
+    /**
+     * Scales an image drawn at one pixel per cell, like the one {@link BoardRenderer#render(BoardArray, int, int[])}
+     * draws with a cellDiameter of 1, up to cellDiameter pixels per cell
+     *
+     * @param cellPixels   Colour of every cell, one row of cells after another
+     * @param width        Number of cells in each row
+     * @param height       Number of rows
+     * @param cellDiameter Diameter of each cell in pixels
+     * @param pixels       Buffer to draw into, at least width * cellDiameter by height * cellDiameter pixels
+     */
+    static void upscale(int[] cellPixels, int width, int height, int cellDiameter, int[] pixels) {
+        for (int row = 0; row < height; row++) {
+            int firstPixel = row * cellDiameter * width * cellDiameter;
+
+            System.arraycopy(cellPixels, row * width, pixels, firstPixel, width);
+            upscaleRow(pixels, firstPixel, width, cellDiameter);
+        }
+    }
+
+    /**
+     * Widens a row of cells that has been written at one pixel per cell to cellDiameter pixels per cell, in place, then
+     * copies the widened row down for the rest of the cells' height. Cells are widened from the right, so no cell is
+     * overwritten before it has been read
+     *
+     * @param pixels       Buffer the row is in
+     * @param firstPixel   Index of the first pixel of the row
+     * @param width        Number of cells in the row
+     * @param cellDiameter Diameter of each cell in pixels
+     */
+    private static void upscaleRow(int[] pixels, int firstPixel, int width, int cellDiameter) {
+        if (cellDiameter == 1) return;
+
+        for (int i = width - 1; i >= 0; i--) {
+            int spanStart = firstPixel + i * cellDiameter;
+            Arrays.fill(pixels, spanStart, spanStart + cellDiameter, pixels[firstPixel + i]);
+        }
+
+        int imageWidth = width * cellDiameter;
+        for (int row = 1; row < cellDiameter; row++) {
+            System.arraycopy(pixels, firstPixel, pixels, firstPixel + row * imageWidth, imageWidth);
+        }
+    }
+
+    /**
+     * @return Opaque ARGB colour of a cell of the board, the background if it is empty
+     */
+    static int cellColour(BoardArray board, int x, int y) {
+        int index = board.getPaletteIndex(x, y);
+        if (index == 0) return BACKGROUND_COLOUR;
+
+        Block block = board.getPaletteColour(index);
+        return colour(block.r, block.g, block.b);
+    }
+
+    /**
+     * @return Opaque ARGB colour
+     */
+    private static int colour(int r, int g, int b) {
+        return 0xFF000000 | r << 16 | g << 8 | b;
+    }
+}
@@ -0,0 +1,109 @@
+package core;
+
+import core.Piece.PieceColour;
+
+import java.util.ArrayList;
+
+/**
+ * Copy of what the window shows of a Board at one moment. The simulation thread fills a snapshot and hands it to the
+ * window, and never touches it again until the window hands it back, so the window can read it while the Board carries
+ * on changing. Snapshots are reused rather than created for every frame.
+ * <p>
+ * Most snapshots only hold the cells that changed since the one before, so the window has to apply every snapshot, in
+ * order. {@link SimulationThread} doesn't publish a new snapshot until the window has taken the last one
+ */
+class BoardSnapshot {
+    // Increases by one for every snapshot the simulation thread publishes
+    long sequence;
+
+    // Colour of each visible cell at one pixel per cell, with the top row of the board first. Only filled when
+    // fullRedraw is set
+    final int[] cellPixels;
+    final int width;
+    final int height;
+    // Set when cellPixels holds the whole board. Otherwise only the cells that changed since the snapshot before are
+    // given, as indices into cellPixels with their new colours. A cell can be given more than once, the last one counts
+    boolean fullRedraw;
+    int[] changedCells = new int[64];
+    int[] changedColours = new int[64];
+    int changedCellCount;
+
+    // Tower goals still to be built and the one being built now, null once they are all built
+    final ArrayList<TowerGoal> towerGoals = new ArrayList<>();
+    TowerGoal currentTowerGoal;
+    PieceColour currentPiece;
+
+    int placementsPerSecond;
+    // Number of images saved so far
+    int saveCount;
+    boolean paused;
+
+    /**
+     * @param width  Width of the board in blocks
+     * @param height Visible height of the board in blocks
+     */
+    BoardSnapshot(int width, int height) {
+        this.width = width;
+        this.height = height;
+        cellPixels = new int[width * height];
+    }
+
+    /**
+     * Copies what has changed on the Board since the last snapshot into this snapshot, or the whole Board if most of it
+     * has changed
+     *
+     * @param board Board to copy, only the simulation thread can call this
+     */
+    void copyFrom(Board board) {
+        int changes = board.getChangedCellCount();
+
+        if (board.isFullRedrawNeeded() || changes > cellPixels.length / 4) {
+            copyAllFrom(board);
+            return;
+        }
+
+        if (changes > changedCells.length) {
+            changedCells = new int[changes];
+            changedColours = new int[changes];
+        }
+
+        fullRedraw = false;
+        changedCellCount = 0;
+        for (int i = 0; i < changes; i++) {
+            int cell = board.getChangedCell(i);
+            int x = cell % width;
+            int y = cell / width;
+            // Cells above the visible area aren't drawn
+            if (y >= height) continue;
+
+            changedCells[changedCellCount] = (height - 1 - y) * width + x;
+            changedColours[changedCellCount] = BoardRenderer.cellColour(board.board, x, y);
+            changedCellCount++;
+        }
+
+        board.clearChangedCells();
+        copyStateFrom(board);
+    }
+
+    /**
+     * Copies the whole Board into this snapshot
+     *
+     * @param board Board to copy, only the thread that changes the Board can call this
+     */
+    void copyAllFrom(Board board) {
+        BoardRenderer.render(board.board, 1, cellPixels);
+        fullRedraw = true;
+        changedCellCount = 0;
+
+        board.clearChangedCells();
+        copyStateFrom(board);
+    }
+
+    private void copyStateFrom(Board board) {
+        // Tower goals are never changed once they are made, so the snapshot can share them with the Board
+        towerGoals.clear();
+        if (board.towerGoals != null) towerGoals.addAll(board.towerGoals);
+        currentTowerGoal = board.currentTowerGoal;
+        currentPiece = board.currentPiece.pieceColour;
+    }
+}
@@ -0,0 +1,130 @@
+package core;
+
+/**
+ * Remembers the hashes of states that are known to lead to a dead end, so the search can avoid going back into them.
+ * The cache holds a fixed number of hashes. It is split into sets of 4 slots and a hash can only go in the set picked
+ * by its low bits. When a set is full, one of its hashes is evicted using the CLOCK algorithm: each slot has a
+ * referenced bit which is set whenever its hash is found, and the clock hand clears referenced bits as it passes them
+ * until it reaches a slot that hasn't been referenced since the last time round.
+ * <p>
+ * 0 marks an empty slot, so a hash of 0 is never stored
+ */
+class DeadEndCache {
+    private static final int WAYS = 4;
+
+    private long[] hashes;
+    private boolean[] referenced;
+    // Position of the clock hand in each set
+    private byte[] hands;
+    private int setMask;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * @param capacity Number of hashes the cache can hold, rounded up to a power of 2 no smaller than 4
+     */
+    DeadEndCache(int capacity) {
+        int sets = Integer.highestOneBit(Math.max(capacity / WAYS, 1));
+        if (sets * WAYS < capacity) sets <<= 1;
+
+        hashes = new long[sets * WAYS];
+        referenced = new boolean[sets * WAYS];
+        hands = new byte[sets];
+        setMask = sets - 1;
+    }
+
+    /**
+     * Checks if a state is known to lead to a dead end, and counts the lookup as a hit or a miss
+     *
+     * @param hash Hash of the state
+     * @return true if the hash is in the cache, false otherwise
+     */
+    boolean contains(long hash) {
+        int first = ((int) hash & setMask) * WAYS;
+
+        for (int slot = first; slot < first + WAYS; slot++) {
+            if (hashes[slot] == hash && hash != 0) {
+                referenced[slot] = true;
+                hits++;
+                return true;
+            }
+        }
+
+        misses++;
+        return false;
+    }
+
+    /**
+     * Checks if a state is known to lead to a dead end without counting the lookup or marking the hash as referenced.
+     * It only reads the cache, so several threads can call it at once as long as nothing is being added
+     *
+     * @param hash Hash of the state
+     * @return true if the hash is in the cache, false otherwise
+     */
+    boolean peek(long hash) {
+        int first = ((int) hash & setMask) * WAYS;
+
+        for (int slot = first; slot < first + WAYS; slot++) {
+            if (hashes[slot] == hash && hash != 0) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Counts lookups that were made with {@link DeadEndCache#peek(long)}
+     *
+     * @param hits   Number of lookups that found their state
+     * @param misses Number of lookups that didn't find their state
+     */
+    void countLookups(long hits, long misses) {
+        this.hits += hits;
+        this.misses += misses;
+    }
+
+    /**
+     * Adds a state that leads to a dead end to the cache, evicting another one from its set if the set is full
+     *
+     * @param hash Hash of the state
+     */
+    void add(long hash) {
+        if (hash == 0) return;
+
+        int set = (int) hash & setMask;
+        int first = set * WAYS;
+
+        for (int slot = first; slot < first + WAYS; slot++) {
+            if (hashes[slot] == hash) return;
+
+            if (hashes[slot] == 0) {
+                hashes[slot] = hash;
+                return;
+            }
+        }
+
+        // The set is full, move the clock hand until it reaches a slot that hasn't been referenced
+        int hand = hands[set];
+        while (referenced[first + hand]) {
+            referenced[first + hand] = false;
+            hand = (hand + 1) % WAYS;
+        }
+
+        hashes[first + hand] = hash;
+        hands[set] = (byte) ((hand + 1) % WAYS);
+    }
+
+    /**
+     * @return Number of lookups that found their state in the cache
+     */
+    long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Number of lookups that didn't find their state in the cache
+     */
+    long getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,211 @@
+package core;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates images without opening a window. Pieces are simulated in a plain loop instead of one per frame, and
+ * finished boards are rendered to an image that an {@link ImageWriter} saves while the worker moves on. Each worker
+ * thread generates its own Board from its own seed and saves a fixed share of the images: with N workers, worker i
+ * saves images i, i + N, i + 2N and so on. Which Board each image comes from doesn't depend on how the threads are
+ * scheduled, so a seeded run always saves the same images.
+ * <p>
+ * With {@link Window#argStream} each worker writes each of its images a band of rows at a time while the Board is
+ * being filled, so only a few bands of the image are ever in memory
+ */
+class HeadlessGenerator {
+    // Number of rows written out at a time when streaming
+    static final int STREAM_BAND_ROWS = 64;
+
+    /**
+     * Runs {@link Window#argThreads} Board generators until the requested number of images have been saved
+     */
+    static void run() {
+        long start = System.currentTimeMillis();
+
+        AtomicInteger saveCount = new AtomicInteger();
+        // One writer per worker, with room for each worker to have another image waiting
+        ImageWriter writer = new ImageWriter(Window.argThreads, 2 * Window.argThreads);
+
+        Board[] boards = generateImages(writer, saveCount);
+        writer.finish();
+
+        int resets = 0;
+        int backtracks = 0;
+        int resetsAvoided = 0;
+        int deadEndsDetected = 0;
+        long deadEndCacheHits = 0;
+        long deadEndCacheMisses = 0;
+        long piecesPlaced = 0;
+        int perfectBoards = 0;
+        int holds = 0;
+        long candidatesScored = 0;
+        long candidatesPruned = 0;
+        for (Board board : boards) {
+            resets += board.resets;
+            backtracks += board.backtracks;
+            resetsAvoided += board.resetsAvoided;
+            deadEndsDetected += board.deadEndsDetected;
+            deadEndCacheHits += board.deadEnds.getHits();
+            deadEndCacheMisses += board.deadEnds.getMisses();
+            piecesPlaced += board.piecesPlaced;
+            perfectBoards += board.perfectBoards;
+            holds += board.holds;
+            candidatesScored += board.candidatesScored;
+            candidatesPruned += board.candidatesPruned;
+        }
+
+        System.out.println("Resets: " + resets + " | Backtracks: " + backtracks + " | Resets avoided: " +
+                resetsAvoided + " | Dead ends detected early: " + deadEndsDetected);
+        System.out.println("Dead end cache hits: " + deadEndCacheHits + " | Misses: " + deadEndCacheMisses);
+        System.out.println("Candidates scored: " + candidatesScored + " | Pruned: " + candidatesPruned);
+        if (perfectBoards > 0) {
+            System.out.println("Pieces per perfect board: " + piecesPlaced / perfectBoards + " | Resets per image: " +
+                    (float) resets / perfectBoards + " | Holds: " + holds);
+        }
+        writer.printStatistics();
+
+        // A worker stops when one of its images can't be written, so the run didn't finish
+        if (saveCount.get() < Window.argOutputNum) {
+            System.out.println("Generation failed, only " + saveCount.get() + " of " + Window.argOutputNum +
+                    " images were saved");
+            System.exit(1);
+        }
+
+        System.out.println("Program has generated " + saveCount.get() + " images. Now exiting");
+        System.out.println("Time: " + (System.currentTimeMillis() - start) / 1000);
+    }
+
+    /**
+     * Runs {@link Window#argThreads} workers until every requested image has been saved or handed to the writer
+     *
+     * @param writer    Writes the images of finished Boards, shared between all workers
+     * @param saveCount Number of images saved so far, shared between all workers
+     * @return The Board of each worker, in worker order
+     */
+    static Board[] generateImages(final ImageWriter writer, final AtomicInteger saveCount) {
+        Board[] boards = new Board[Window.argThreads];
+        ExecutorService workers = Executors.newFixedThreadPool(Window.argThreads);
+        // Set when a streamed image can't be written, every worker stops then
+        final AtomicBoolean failed = new AtomicBoolean();
+        for (int i = 0; i < Window.argThreads; i++) {
+            final Board board = new Board(Window.widthInBlocks, Window.heightInBlocks, Window.createRandom(i));
+            final int firstImageIndex = i;
+            boards[i] = board;
+
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (Window.argStream) {
+                        generateStreamed(board, firstImageIndex, saveCount, failed);
+                    } else {
+                        generate(board, firstImageIndex, writer, saveCount);
+                    }
+                }
+            });
+        }
+
+        workers.shutdown();
+        try {
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return boards;
+    }
+
+    /**
+     * Simulates Pieces on a Board and saves every perfect Board as the worker's next image, until all of the worker's
+     * images have been saved
+     *
+     * @param board           Board to generate on, only used by this thread
+     * @param firstImageIndex Number of the worker's first image, its later images are every argThreads after it
+     * @param writer          Writes the images of finished Boards, shared between all workers
+     * @param saveCount       Number of images saved so far, shared between all workers
+     */
+    private static void generate(Board board, int firstImageIndex, ImageWriter writer, AtomicInteger saveCount) {
+        int imageIndex = firstImageIndex;
+        while (imageIndex < Window.argOutputNum) {
+            board.simulateCurrentPiece();
+            board.loadNextPieceFromQueue();
+
+            // If we've found an acceptable Board then save it and reset
+            if (board.shouldSaveAndResetBoard) {
+                // The rendered image is a snapshot, so the Board can be reset while it is being written
+                writer.submit(BoardRenderer.render(board.board, Window.cellDiameter), imageIndex + Window.argFileType);
+                saveCount.incrementAndGet();
+                imageIndex += Window.argThreads;
+
+                board.resetBoard();
+                board.shouldSaveAndResetBoard = false;
+            }
+        }
+    }
+
+    /**
+     * Simulates Pieces on a Board and streams each of the worker's images to disk as it is filled. Every time the lowest
+     * column rises above a band of rows, the band is written out and dropped from the Board. Once the Board is perfect
+     * the rows still on it are the top of the image
+     *
+     * @param board           Board to generate on, only used by this thread
+     * @param firstImageIndex Number of the worker's first image, its later images are every argThreads after it
+     * @param saveCount       Number of images saved so far, shared between all workers
+     * @param failed          Set when an image can't be written, shared between all workers, who stop once it is set
+     */
+    private static void generateStreamed(Board board, int firstImageIndex, AtomicInteger saveCount,
+                                         AtomicBoolean failed) {
+        for (int imageIndex = firstImageIndex; imageIndex < Window.argOutputNum && !failed.get();
+             imageIndex += Window.argThreads) {
+            String fileName = imageIndex + ".bmp";
+
+            try {
+                streamImage(board, new StreamingImageWriter(fileName, board.board.width, board.imageHeight,
+                        Window.cellDiameter));
+                saveCount.incrementAndGet();
+            } catch (IOException e) {
+                System.out.println("Could not write " + fileName + ": " + e.getMessage());
+                failed.set(true);
+                return;
+            }
+
+            board.startNextImage();
+        }
+    }
+
+    /**
+     * Simulates Pieces on a Board until it is perfect, writing each band of rows the lowest column has risen above and
+     * dropping it from the Board, then writes the rows still on the Board as the top of the image
+     *
+     * @param board Board to generate on, the image starts from its bottom row
+     * @param out   Writer for the image, closed once every row has been written. If the image can't be written the
+     *              partial file is deleted
+     * @throws IOException If the image can't be written
+     */
+    static void streamImage(Board board, StreamingImageWriter out) throws IOException {
+        boolean written = false;
+
+        try {
+            while (!board.shouldSaveAndResetBoard) {
+                board.simulateCurrentPiece();
+                board.loadNextPieceFromQueue();
+
+                int rows = board.getStreamableRows();
+                if (rows > 0) {
+                    out.writeRows(board.board, 0, rows);
+                    board.dropStreamedRows(rows);
+                }
+            }
+
+            out.writeRows(board.board, 0, board.board.visibleHeight);
+            out.close();
+            written = true;
+        } finally {
+            if (!written) out.abandon();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package core;
+
+import processing.core.PImage;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes and writes images to disk on its own pool of threads, so generation can carry on with the next Board while
+ * the last one is being saved. Images wait in a bounded queue; when it is full, {@link ImageWriter#submit} blocks
+ * until a writer takes one, so finished images can't pile up in memory faster than they can be written.
+ * <p>
+ * The queue depth is sampled every time an image is submitted, and the time spent encoding and writing is kept per
+ * file type. An image that fails to be written is reported and skipped, the writer carries on with the next one so the
+ * queue is always drained
+ */
+class ImageWriter {
+    // Put in the queue once per writer to tell it to stop
+    private static final Job STOP = new Job(null, null);
+
+    private ArrayBlockingQueue<Job> queue;
+    private ExecutorService writers;
+    private int writerCount;
+
+    // Queue depth seen by each submit, and the time submits spent waiting for space in the queue
+    private long submits;
+    private long totalQueueDepth;
+    private int maxQueueDepth;
+    private long blockedNanos;
+    // Number of images that couldn't be written
+    private int failures;
+    // Number of images and time spent encoding them, for each file type in the order they were first written
+    private final Map<String, long[]> encodeTimes = new LinkedHashMap<>();
+
+    /**
+     * @param writerCount Number of threads that encode and write images
+     * @param capacity    Number of images that can wait in the queue before submitting blocks
+     */
+    ImageWriter(int writerCount, int capacity) {
+        this.writerCount = writerCount;
+        queue = new ArrayBlockingQueue<>(capacity);
+
+        writers = Executors.newFixedThreadPool(writerCount);
+        for (int i = 0; i < writerCount; i++) {
+            writers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    writeUntilStopped();
+                }
+            });
+        }
+    }
+
+    /**
+     * Queues an image to be written, blocking while the queue is full. The image must not be changed afterwards, so
+     * it should be a snapshot of the Board rather than something that is still being drawn to
+     *
+     * @param image    Image to save
+     * @param fileName Name of the file including the extension
+     */
+    void submit(BufferedImage image, String fileName) {
+        synchronized (this) {
+            int depth = queue.size();
+            submits++;
+            totalQueueDepth += depth;
+            maxQueueDepth = Math.max(maxQueueDepth, depth);
+        }
+
+        long start = System.nanoTime();
+        try {
+            queue.put(new Job(image, fileName));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        synchronized (this) {
+            blockedNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Waits for every queued image to be written and stops the writer threads. Nothing can be submitted afterwards
+     */
+    void finish() {
+        try {
+            for (int i = 0; i < writerCount; i++) {
+                queue.put(STOP);
+            }
+
+            writers.shutdown();
+            writers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Prints the queue depth, how long generation was held up by a full queue and the encode time of each file type
+     */
+    synchronized void printStatistics() {
+        if (failures > 0) System.out.println("Images that could not be written: " + failures);
+        if (submits == 0) return;
+
+        System.out.println("Write queue depth: " + (float) totalQueueDepth / submits + " average | " +
+                maxQueueDepth + " max | Generation blocked for " + blockedNanos / 1000000 + "ms");
+
+        for (Map.Entry<String, long[]> entry : encodeTimes.entrySet()) {
+            long[] times = entry.getValue();
+            System.out.println("Encode time (" + entry.getKey() + "): " + (float) times[1] / times[0] / 1000000 +
+                    "ms per image | " + times[0] + " images");
+        }
+    }
+
+    /**
+     * Takes images off the queue and writes them until a stop job is taken
+     */
+    private void writeUntilStopped() {
+        try {
+            while (true) {
+                Job job = queue.take();
+                if (job == STOP) return;
+
+                String format = job.fileName.substring(job.fileName.lastIndexOf('.') + 1);
+                long start = System.nanoTime();
+                try {
+                    if (write(job.image, job.fileName, format)) {
+                        recordEncodeTime(format, System.nanoTime() - start);
+                    } else {
+                        recordFailure();
+                    }
+                } catch (RuntimeException e) {
+                    // An encoder bug must not kill the writer, nothing else would drain the queue
+                    System.out.println("Could not write " + job.fileName + ": " + e);
+                    recordFailure();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return Number of images that couldn't be written so far
+     */
+    synchronized int getFailureCount() {
+        return failures;
+    }
+
+    private synchronized void recordFailure() {
+        failures++;
+    }
+
+    private synchronized void recordEncodeTime(String format, long nanos) {
+        long[] times = encodeTimes.get(format);
+        if (times == null) {
+            times = new long[2];
+            encodeTimes.put(format, times);
+        }
+
+        times[0]++;
+        times[1] += nanos;
+    }
+
+    /**
+     * Writes an image to disk. ImageIO is used where it has a writer for the file type, otherwise Processing's own
+     * encoder is used (e.g. for tga, which ImageIO can't write)
+     *
+     * @param image    Image to save
+     * @param fileName Name of the file including the extension
+     * @param format   Extension of the file name
+     * @return true if the image was written, false if it couldn't be
+     */
+    private static boolean write(BufferedImage image, String fileName, String format) {
+        File file = new File(fileName).getAbsoluteFile();
+
+        try {
+            if (ImageIO.write(image, format, file)) return true;
+        } catch (IOException e) {
+            System.out.println("Could not write " + fileName + ": " + e.getMessage());
+            return false;
+        }
+
+        return new PImage(image).save(file.getPath());
+    }
+
+    /**
+     * An image waiting to be written
+     */
+    private static class Job {
+        private BufferedImage image;
+        private String fileName;
+
+        Job(BufferedImage image, String fileName) {
+            this.image = image;
+            this.fileName = fileName;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package core;
+
+import core.Piece.PieceColour;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds the best candidate for a Piece by splitting its orientations and columns into tasks that run on a
+ * ForkJoinPool, for boards that are too wide to search quickly on one thread. Candidates are scored from the column
+ * heights of the board without placing them, so the board is only read while the tasks run.
+ * <p>
+ * The result doesn't depend on how the tasks are scheduled. Each task counts the candidates in its range that share
+ * its best score, the counts of the tasks with the overall best score are added up in task order and one random
+ * number picks between every candidate with that score
+ */
+class ParallelCandidateSearch {
+    // Shared by every Board, the pool has one worker per processor
+    private static final ForkJoinPool pool = new ForkJoinPool();
+    // Number of columns searched by each task
+    private static final int COLUMNS_PER_TASK = 256;
+
+    private Board owner;
+    private PlacementHistory history;
+
+    /**
+     * @param owner   Board to search on
+     * @param history Placements of the Board, used to skip placements that have been backtracked out of
+     */
+    ParallelCandidateSearch(Board owner, PlacementHistory history) {
+        this.owner = owner;
+        this.history = history;
+    }
+
+    /**
+     * Finds the best candidate for a Piece. When several candidates share the best score each one is equally likely to
+     * be picked
+     *
+     * @param pieceColour Piece to place
+     * @param queueHash   Hash of the queue and held Piece after the Piece is placed, used to look candidates up in
+     *                    the dead end cache
+     * @param random      Source of randomness used to pick between candidates with the same score
+     * @param result      Set to the best candidate
+     * @return true if a candidate was found, false if the Piece can't be placed anywhere
+     */
+    boolean search(PieceColour pieceColour, long queueHash, Random random, PotentialBoardState result) {
+        BoardArray board = owner.board;
+
+        // One task for each block of columns of each orientation
+        final ArrayList<SearchTask> tasks = new ArrayList<>();
+        PieceOrientation orientation = PieceOrientation.getSpawnOrientation(pieceColour);
+        for (int i = 0; i < PieceOrientation.getOrientationCount(pieceColour); i++) {
+            int lastX = board.width - 1 - orientation.maxXOffset;
+
+            for (int firstX = -orientation.minXOffset; firstX <= lastX; firstX += COLUMNS_PER_TASK) {
+                tasks.add(new SearchTask(owner, history, orientation, firstX,
+                        Math.min(firstX + COLUMNS_PER_TASK - 1, lastX), queueHash));
+            }
+
+            orientation = orientation.getClockwiseRotation();
+        }
+
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+
+        // Combine the tasks in order, so the same candidates are counted the same way every time
+        float bestScore = Float.MAX_VALUE;
+        int bestCount = 0;
+        long hits = 0;
+        long misses = 0;
+        for (SearchTask task : tasks) {
+            hits += task.hits;
+            misses += task.misses;
+
+            if (task.bestCount == 0) continue;
+
+            if (bestCount == 0 || task.bestScore < bestScore) {
+                bestScore = task.bestScore;
+                bestCount = task.bestCount;
+            } else if (task.bestScore == bestScore) {
+                bestCount += task.bestCount;
+            }
+        }
+
+        owner.deadEnds.countLookups(hits, misses);
+        for (SearchTask task : tasks) {
+            owner.candidatesScored += task.scored;
+            owner.candidatesPruned += task.pruned;
+        }
+
+        if (bestCount == 0) return false;
+
+        // Pick one of the candidates with the best score and find the task it is in
+        int pick = bestCount == 1 ? 0 : random.nextInt(bestCount);
+        for (SearchTask task : tasks) {
+            if (task.bestCount == 0 || task.bestScore != bestScore) continue;
+
+            if (pick < task.bestCount) {
+                task.find(bestScore, pick, result);
+                break;
+            }
+            pick -= task.bestCount;
+        }
+
+        return true;
+    }
+
+    /**
+     * Searches a range of columns for one orientation of a Piece
+     */
+    private static class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private Board owner;
+        private PlacementHistory history;
+        private PieceOrientation orientation;
+        private int firstX;
+        private int lastX;
+        private long queueHash;
+        // Scratch state used to score each candidate, only used by this task
+        private PotentialBoardState candidate;
+
+        // Best score in the range and the number of candidates with that score
+        private float bestScore;
+        private int bestCount;
+        // Dead end cache lookups made by this task
+        private long hits;
+        private long misses;
+        // Candidates scored and skipped by this task
+        private long scored;
+        private long pruned;
+
+        /**
+         * @param owner       Board to search on
+         * @param history     Placements of the Board, used to skip placements that have been backtracked out of
+         * @param orientation Orientation of the Piece to search
+         * @param firstX      Leftmost column to search
+         * @param lastX       Rightmost column to search
+         * @param queueHash   Hash of the queue and held Piece after the Piece is placed
+         */
+        SearchTask(Board owner, PlacementHistory history, PieceOrientation orientation, int firstX, int lastX,
+                   long queueHash) {
+            this.owner = owner;
+            this.history = history;
+            this.orientation = orientation;
+            this.firstX = firstX;
+            this.lastX = lastX;
+            this.queueHash = queueHash;
+            candidate = new PotentialBoardState(owner);
+        }
+
+        @Override
+        protected void compute() {
+            ScoringStrategy scoringStrategy = owner.getScoringStrategy();
+
+            for (int x = firstX; x <= lastX; x++) {
+                // If the candidate can't be as good as the best in this range, there is no need to score it
+                if (bestCount != 0 && scoringStrategy.lowerBound(owner, orientation, x) > bestScore) {
+                    pruned++;
+                    continue;
+                }
+
+                if (!score(x)) continue;
+                scored++;
+
+                if (bestCount == 0 || candidate.score < bestScore) {
+                    bestScore = candidate.score;
+                    bestCount = 1;
+                } else if (candidate.score == bestScore) {
+                    bestCount++;
+                }
+            }
+        }
+
+        /**
+         * Finds a candidate with the best score in the range again
+         *
+         * @param score  Best score
+         * @param index  Which of the candidates with the best score to find, counting from the left
+         * @param result Set to the candidate
+         */
+        void find(float score, int index, PotentialBoardState result) {
+            for (int x = firstX; x <= lastX; x++) {
+                if (!score(x) || candidate.score != score) continue;
+
+                if (index-- == 0) {
+                    result.copyFrom(candidate);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Scores the candidate in column x, if there is one
+         *
+         * @return true if the candidate was scored, false if the Piece can't go in the column
+         */
+        private boolean score(int x) {
+            BoardArray board = owner.board;
+
+            // If this placement has been backtracked out of before, don't try it again
+            if (history.isExcluded(orientation, x)) return false;
+
+            // Land the Piece on the column heights, it rests on whichever column it reaches first
+            int firstColumn = x + orientation.minXOffset;
+            int y = 0;
+            for (int column = 0; column < orientation.getWidth(); column++) {
+                y = Math.max(y, board.getColumnHeight(firstColumn + column) - orientation.columnBottoms[column]);
+            }
+            if (y + orientation.maxYOffset > board.height - 1) return false;
+
+            // It can only go here if the gaps it leaves under it fit in what is left of the hole budget
+            int newHoles = 0;
+            for (int column = 0; column < orientation.getWidth(); column++) {
+                newHoles += y + orientation.columnBottoms[column] - board.getColumnHeight(firstColumn + column);
+            }
+            if (newHoles > owner.getHolesLeft()) return false;
+            if (!owner.keepsHeightDiffReachable(orientation, x, y)) return false;
+
+            // Skip candidates that are already known to lead to a dead end
+            if (owner.deadEnds.peek(board.getHashWith(orientation, x, y) ^ queueHash)) {
+                hits++;
+                return false;
+            }
+            misses++;
+
+            candidate.setWithoutPlacing(orientation, x, y);
+
+            return true;
+        }
+    }
+}
@@ -1,26 +1,16 @@
 package core;
 
-import org.apache.commons.math3.linear.MatrixUtils;
-import org.apache.commons.math3.linear.RealMatrix;
-
 /**
- * Represent a piece on the board. core.Piece position is defined from a center and block offsets.
+ * Represent a piece on the board. core.Piece position is defined from a center and block offsets, the block offsets
+ * come from the core.Piece's entry in the {@link PieceOrientation} table.
  */
 public class Piece {
 
-    static final RealMatrix counterClockwiseRotationMatrix =
-            MatrixUtils.createRealMatrix(new double[][]{{0, 1}, {-1, 0}});
-
-    static final RealMatrix clockwiseRotationMatrix = MatrixUtils.createRealMatrix(new double[][]{{0, -1}, {1, 0}});
-
-    // Bound Offsets
-    int maxXOffset;
-    int minXOffset;
-    int maxYOffset;
-    int minYOffset;
-
     PieceColour pieceColour;
-    RealMatrix blockOffsets;
+    PieceOrientation orientation;
+
+    // Board the Piece is on
+    private BoardArray board;
 
     // Position
     public int boardX;
@@ -33,19 +23,30 @@ public class Piece {
      * Initialises the core.Piece with a preset set of block offsets using the default set of pieces at a given position
      * on the board. The core.Piece will be constructed with the deafult rotation for the given core.Piece
      *
+     * @param board       core.Board the core.Piece is placed on
      * @param pieceColour core.Piece type to inherit default block positions from
      * @param boardX
      * @param boardY
      */
-    public Piece(PieceColour pieceColour, int boardX, int boardY) {
-        this.pieceColour = pieceColour;
+    public Piece(BoardArray board, PieceColour pieceColour, int boardX, int boardY) {
+        this(board, PieceOrientation.getSpawnOrientation(pieceColour), boardX, boardY);
+    }
+
+    /**
+     * Initialises the core.Piece in a given orientation at a given position on the board
+     *
+     * @param board       core.Board the core.Piece is placed on
+     * @param orientation Orientation of the core.Piece, which also decides the core.Piece type
+     * @param boardX
+     * @param boardY
+     */
+    Piece(BoardArray board, PieceOrientation orientation, int boardX, int boardY) {
+        this.board = board;
+        this.pieceColour = orientation.pieceColour;
+        this.orientation = orientation;
         this.boardX = boardX;
         this.boardY = boardY;
         this.stopped = false;
-
-        blockOffsets = DefaultPieceRotations.values()[pieceColour.ordinal()].blockOffsets;
-
-        updateMaxMinValues();
     }
 
     /**
@@ -55,68 +56,87 @@ public class Piece {
      * @param y
      * @return
      */
-    private static boolean isIndexOutOfBoardBounds(int x, int y) {
-        return (x < 0 || x > Board.board.width - 1 || y < 0 || y > Board.board.height - 1);
+    private boolean isIndexOutOfBoardBounds(int x, int y) {
+        return (x < 0 || x > board.width - 1 || y < 0 || y > board.height - 1);
     }
 
     /**
      * Rotates the core.Piece clockwise. Doesn't do any error checking or check if the rotation would make the core
      * .Piece
-     * overlap with existing Pieces on the board. Updates the bound offsets afterwards
+     * overlap with existing Pieces on the board
      */
     void rotatePieceClockwise() {
-        // The O core.Piece doesn't rotate
-        if (pieceColour == PieceColour.O) return;
-
-        // Rotate the piece
-        // The I core.Piece must be handled seperately, otherwise rotate using matrix multiplication
-        if (pieceColour == PieceColour.I) {
-            IRotations currentRotation = IRotations.identifyRotationFromMatrix(blockOffsets);
-            blockOffsets = currentRotation.getClockwiseRotation().blockOffsets;
-        } else {
-            blockOffsets = clockwiseRotationMatrix.multiply(blockOffsets);
-        }
-
-        // As the piece has been rotated, the min and max values must be updated
-        updateMaxMinValues();
+        orientation = orientation.getClockwiseRotation();
     }
 
     /**
      * Rotates the core.Piece counterclockwise. Doesn't do any error checking or check if the rotation would make the core.Piece
-     * overlap with existing Pieces on the board. Updates the bound offsets afterwards
+     * overlap with existing Pieces on the board
      */
     void rotatePieceCounterClockwise() {
-        if (pieceColour == PieceColour.O) return;
+        orientation = orientation.getCounterClockwiseRotation();
+    }
 
-        // Rotate the piece
-        // The I core.Piece must be handled seperately, otherwise rotate using matrix multiplication
-        if (pieceColour == PieceColour.I) {
-            IRotations currentRotation = IRotations.identifyRotationFromMatrix(blockOffsets);
-            blockOffsets = currentRotation.getCounterClockwiseRotation().blockOffsets;
-        } else {
-            blockOffsets = counterClockwiseRotationMatrix.multiply(blockOffsets);
+
+    /**
+     * Hard drops the current core.Piece onto the board. The core.Piece must be above the highest block of every
+     * column it covers, as it is when it is dropped from the top of the board
+     */
+    void hardDropPiece() {
+        boardY = findLandingRow();
+    }
+
+    /**
+     * Finds the row the center of the core.Piece would land on if it was dropped from above the board. In each column
+     * the lowest block of the core.Piece rests on top of the column, the core.Piece lands on whichever column
+     * stops it first
+     *
+     * @return Row of the center of the core.Piece after it has landed
+     */
+    int findLandingRow() {
+        int firstColumn = boardX + orientation.minXOffset;
+        int landingRow = Integer.MIN_VALUE;
+
+        for (int column = 0; column < orientation.columnBottoms.length; column++) {
+            landingRow = Math.max(landingRow,
+                    board.getColumnHeight(firstColumn + column) - orientation.columnBottoms[column]);
         }
 
-        // As the piece has been rotated, the min and max values must be updated
-        updateMaxMinValues();
+        return landingRow;
     }
 
+    /**
+     * Counts the holes the core.Piece would leave underneath it at its current position, the gap between the lowest
+     * block of the core.Piece in each column and the highest block in that column
+     *
+     * @return Number of empty cells that would be covered by the core.Piece
+     */
+    int countNewHoles() {
+        int firstColumn = boardX + orientation.minXOffset;
+        int newHoles = 0;
+
+        for (int column = 0; column < orientation.columnBottoms.length; column++) {
+            newHoles += boardY + orientation.columnBottoms[column] - board.getColumnHeight(firstColumn + column);
+        }
+
+        return newHoles;
+    }
 
     /**
-     * Hard drops the current core.Piece onto the board
+     * Finds the landing row by starting the core.Piece at the top of the board and moving it down one row at a time
+     * until it is blocked. This is much slower than {@link Piece#findLandingRow()}, it is only used to cross check
+     * it when assertions are enabled
      *
-     * @return true if the piece can't lower and has stopped, false if the piece has lowered
+     * @return Row of the center of the core.Piece after it has landed
      */
-    void hardDropPiece() {
-        boolean shouldStop = false;
+    int findLandingRowStepwise() {
+        int landingRow = board.height - 1 - orientation.maxYOffset;
 
-        while (!shouldStop) {
-            if (wouldNewCenterBeValid(boardX, boardY - 1)) {
-                boardY--;
-            } else {
-                shouldStop = true;
-            }
+        while (wouldNewCenterBeValid(boardX, landingRow - 1)) {
+            landingRow--;
         }
+
+        return landingRow;
     }
 
     /**
@@ -147,11 +167,11 @@ public class Piece {
      */
     boolean wouldNewCenterBeValid(int newCenterX, int newCenterY) {
         for (int i = 0; i < 4; i++) {
-            int blockX = (int) blockOffsets.getEntry(0, i) + newCenterX;
-            int blockY = (int) blockOffsets.getEntry(1, i) + newCenterY;
+            int blockX = orientation.xOffsets[i] + newCenterX;
+            int blockY = orientation.yOffsets[i] + newCenterY;
 
             // If the new space is occupied by an already present block, then the new center is not valid
-            if (isIndexOutOfBoardBounds(blockX, blockY) || Board.board.getBlock(blockX, blockY) != null) return false;
+            if (isIndexOutOfBoardBounds(blockX, blockY) || board.isOccupied(blockX, blockY)) return false;
         }
 
         // All new positions are empty so the new center is valid
@@ -192,18 +212,18 @@ public class Piece {
 
     public void placePieceOnBoard() {
         for (int i = 0; i < 4; i++) {
-            int blockX = (int) blockOffsets.getEntry(0, i) + boardX;
-            int blockY = (int) blockOffsets.getEntry(1, i) + boardY;
-            Board.board.set(blockX, blockY, new Block(pieceColour.r, pieceColour.g, pieceColour.b));
+            int blockX = orientation.xOffsets[i] + boardX;
+            int blockY = orientation.yOffsets[i] + boardY;
+            board.setPieceColour(blockX, blockY, pieceColour);
         }
     }
 
     void removePieceOnBoard() {
         for (int i = 0; i < 4; i++) {
 
-            int blockX = (int) blockOffsets.getEntry(0, i) + boardX;
-            int blockY = (int) blockOffsets.getEntry(1, i) + boardY;
-            Board.board.set(blockX, blockY, null);
+            int blockX = orientation.xOffsets[i] + boardX;
+            int blockY = orientation.yOffsets[i] + boardY;
+            board.set(blockX, blockY, null);
         }
     }
 
@@ -211,56 +231,9 @@ public class Piece {
      * @return An array of ints that contain the indexes of the columns the piece is in
      */
     int[] whatColumsIsThisPieceIn() {
-
-        if (pieceColour == PieceColour.I) {
-            switch (IRotations.identifyRotationFromMatrix(blockOffsets)) {
-                case CLOCKWISE_ONE:
-                    return new int[]{boardX + 1};
-                case CLOCKWISE_THREE:
-                    return new int[]{boardX};
-            }
-        }
-
-        // If it isn't an I core.Piece in those specific rotations, calculate the columns the default way
-        int index = 0;
-        int[] columns = new int[maxXOffset + Math.abs(minXOffset) + 1];
-        for (int i = boardX + minXOffset; i <= boardX + maxXOffset; i++) {
-            columns[index] = i;
-            index++;
-        }
-
-        return columns;
-    }
-
-    /**
-     * @return Returns an array of ints that contain the indexes of the columns the piece is in, including a column to
-     * the left of the piece and one to the right of the piece. If the column were to be outside the board then it will
-     * be excluded
-     */
-    int[] whatColumsIsThisPieceInWithPaddingColumns() {
-        // TODO: Make this function more efficient. Possibly use bound offsets and center position
-
-        // Calculate the minimum offset. The piece can't be outside the board but with padding it could be outside
-        // the board
-        // If the padding would be outside the board then restrict it to the board
-        int minPos;
-        if (boardX + minXOffset - 1 >= 0) {
-            minPos = boardX + minXOffset - 1;
-        } else {
-            minPos = boardX + minXOffset;
-        }
-
-        // Same as above
-        int maxPos;
-        if (boardX + maxXOffset + 1 < Board.board.width) {
-            maxPos = boardX + maxXOffset + 1;
-        } else {
-            maxPos = boardX + maxXOffset;
-        }
-
         int index = 0;
-        int[] columns = new int[maxPos - minPos + 1];
-        for (int i = minPos; i <= maxPos; i++) {
+        int[] columns = new int[orientation.getWidth()];
+        for (int i = boardX + orientation.minXOffset; i <= boardX + orientation.maxXOffset; i++) {
             columns[index] = i;
             index++;
         }
@@ -268,61 +241,25 @@ public class Piece {
         return columns;
     }
 
-    /**
-     * Updates the attributes {@link Piece#minXOffset}, {@link Piece#maxXOffset}, {@link Piece#minYOffset},
-     * {@link Piece#maxYOffset} as they will be inaccurate after the core.Piece is rotated
-     */
-    void updateMaxMinValues() {
-        // Find the max and min X offset
-        this.maxXOffset = -99;
-        this.minXOffset = 99;
-        for (double d : blockOffsets.getData()[0]) {
-            this.maxXOffset = Window.max(this.maxXOffset, (int) d);
-            this.minXOffset = Window.min(this.minXOffset, (int) d);
-        }
-
-        // Find the max and min X offset
-        this.maxYOffset = -99;
-        this.minYOffset = 99;
-        for (double d : blockOffsets.getData()[1]) {
-            this.maxYOffset = Window.max(this.maxYOffset, (int) d);
-            this.minYOffset = Window.min(this.minYOffset, (int) d);
-        }
-    }
-
     /**
      * @return Width of core.Piece in blocks
      */
     int calculatePieceWidth() {
-        // The expression in the bottom return statement doesn't work for the I core.Piece so we account for that here
-        if (pieceColour == PieceColour.I) {
-            switch (IRotations.identifyRotationFromMatrix(blockOffsets)) {
-                case CLOCKWISE_THREE:
-                case CLOCKWISE_ONE:
-                    return 1;
-
-                case Initial:
-                case CLOCKWISE_TWO:
-                    return 4;
-            }
-        }
-
-        // Otherwise, calculate the width as normal
-        return Math.abs(minXOffset) + 1 + maxXOffset;
+        return orientation.getWidth();
     }
 
     /**
      * @return The Column Index of the rightmost block
      */
     int getRightMostBlockColumn() {
-        return boardX + maxXOffset;
+        return boardX + orientation.maxXOffset;
     }
 
     /**
      * @return true if the piece is at the edge of the board and it can't move further right, false otherwise
      */
     boolean isPieceAtRightEdgeOfBoard() {
-        return boardX + maxXOffset == Board.board.width - 1;
+        return boardX + orientation.maxXOffset == board.width - 1;
     }
 
     /**
@@ -360,62 +297,4 @@ public class Piece {
         }
     }
 
-    /**
-     * This enum contains preset block offsets for the I core.Piece in all rotations.
-     * <p>
-     * All core.Piece rotations apart from the I core.Piece can be calculated using clockwise and counterclockwise
-     * roatation
-     * matricies. However, since the I core.Piece's center of rotation isn't in the middle of a block, it's in between the
-     * corners of the two middle blocks, we can't use a rotation matrix for it.
-     */
-    private enum IRotations {
-        Initial(MatrixUtils.createRealMatrix(new double[][]{{-1, 0, 1, 2}, {-1, -1, -1, -1}})),
-        CLOCKWISE_ONE(MatrixUtils.createRealMatrix(new double[][]{{1, 1, 1, 1}, {-2, -1, 0, 1}})),
-        CLOCKWISE_TWO(MatrixUtils.createRealMatrix(new double[][]{{-1, 0, 1, 2}, {0, 0, 0, 0}})),
-        CLOCKWISE_THREE(MatrixUtils.createRealMatrix(new double[][]{{0, 0, 0, 0}, {-2, -1, 0, 1}}));
-
-        private RealMatrix blockOffsets;
-
-        IRotations(RealMatrix blockOffsets) {
-            this.blockOffsets = blockOffsets;
-        }
-
-        private static IRotations identifyRotationFromMatrix(RealMatrix matrix) {
-            for (IRotations rotations : IRotations.values()) {
-                if (rotations.blockOffsets.equals(matrix)) return rotations;
-            }
-
-            return null;
-        }
-
-        private IRotations getClockwiseRotation() {
-            return IRotations.values()[(identifyRotationFromMatrix(blockOffsets).ordinal() + 1) % 4];
-        }
-
-        private IRotations getCounterClockwiseRotation() {
-            return IRotations.values()[Math.abs(identifyRotationFromMatrix(blockOffsets).ordinal() - 1) % 4];
-        }
-    }
-
-    enum DefaultPieceRotations {
-        L(MatrixUtils.createRealMatrix(new double[][]{{0, 1, -1, -1}, {0, 0, 0, 1}})),
-        T(MatrixUtils.createRealMatrix(new double[][]{{0, -1, 1, 0}, {0, 0, 0, 1}})),
-        I(IRotations.Initial.blockOffsets),
-        S(MatrixUtils.createRealMatrix(new double[][]{{0, 1, 0, -1}, {0, 0, 1, 1}})),
-        Z(MatrixUtils.createRealMatrix(new double[][]{{0, -1, 0, 1}, {0, 0, 1, 1}})),
-        O(MatrixUtils.createRealMatrix(new double[][]{{0, 0, 1, 1}, {0, 1, 0, 1}})),
-        J(MatrixUtils.createRealMatrix(new double[][]{{0, 1, -1, 1}, {0, 0, 0, 1}}));
-
-        PieceColour name;
-        RealMatrix blockOffsets;
-
-        DefaultPieceRotations(RealMatrix blockOffsets) {
-            this.blockOffsets = blockOffsets;
-        }
-
-        static DefaultPieceRotations getDefaultPieceRotation(PieceColour info) {
-            return DefaultPieceRotations.values()[info.ordinal()];
-        }
-    }
-
 }
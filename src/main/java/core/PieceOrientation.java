@@ -0,0 +1,164 @@
+package core;
+
+import core.Piece.PieceColour;
+
+/**
+ * Table of every distinct orientation of the 7 tetrominos, 19 in total. Each orientation holds the block offsets from
+ * the Piece's center, its bounding box and, for every column it covers, the lowest and highest block offset in that
+ * column. Rotating a Piece only moves it to another entry in this table so no offsets are ever calculated.
+ * <p>
+ * Orientations of the same Piece are listed in clockwise order, starting with the orientation the Piece spawns in.
+ * The I Piece's center of rotation isn't in the middle of a block, so its offsets are listed as they are rather than
+ * being rotations of each other around the center
+ */
+public enum PieceOrientation {
+    J0(PieceColour.J, new int[]{0, 1, -1, -1}, new int[]{0, 0, 0, 1}),
+    J1(PieceColour.J, new int[]{0, 0, 0, -1}, new int[]{0, 1, -1, -1}),
+    J2(PieceColour.J, new int[]{0, -1, 1, 1}, new int[]{0, 0, 0, -1}),
+    J3(PieceColour.J, new int[]{0, 0, 0, 1}, new int[]{0, -1, 1, 1}),
+    T0(PieceColour.T, new int[]{0, -1, 1, 0}, new int[]{0, 0, 0, 1}),
+    T1(PieceColour.T, new int[]{0, 0, 0, -1}, new int[]{0, -1, 1, 0}),
+    T2(PieceColour.T, new int[]{0, 1, -1, 0}, new int[]{0, 0, 0, -1}),
+    T3(PieceColour.T, new int[]{0, 0, 0, 1}, new int[]{0, 1, -1, 0}),
+    I0(PieceColour.I, new int[]{-1, 0, 1, 2}, new int[]{-1, -1, -1, -1}),
+    I1(PieceColour.I, new int[]{1, 1, 1, 1}, new int[]{-2, -1, 0, 1}),
+    S0(PieceColour.S, new int[]{0, 1, 0, -1}, new int[]{0, 0, 1, 1}),
+    S1(PieceColour.S, new int[]{0, 0, -1, -1}, new int[]{0, 1, 0, -1}),
+    Z0(PieceColour.Z, new int[]{0, -1, 0, 1}, new int[]{0, 0, 1, 1}),
+    Z1(PieceColour.Z, new int[]{0, 0, -1, -1}, new int[]{0, -1, 0, 1}),
+    O0(PieceColour.O, new int[]{0, 0, 1, 1}, new int[]{0, 1, 0, 1}),
+    L0(PieceColour.L, new int[]{0, 1, -1, 1}, new int[]{0, 0, 0, 1}),
+    L1(PieceColour.L, new int[]{0, 0, 0, -1}, new int[]{0, 1, -1, 1}),
+    L2(PieceColour.L, new int[]{0, -1, 1, -1}, new int[]{0, 0, 0, -1}),
+    L3(PieceColour.L, new int[]{0, 0, 0, 1}, new int[]{0, -1, 1, -1});
+
+    // Orientations of each Piece in clockwise order, indexed by PieceColour ordinal
+    private static final PieceOrientation[][] orientationsByColour = new PieceOrientation[PieceColour.values().length][];
+
+    final PieceColour pieceColour;
+
+    // Block offsets from the center of the Piece
+    final byte[] xOffsets;
+    final byte[] yOffsets;
+
+    // Bound Offsets
+    final byte minXOffset;
+    final byte maxXOffset;
+    final byte minYOffset;
+    final byte maxYOffset;
+
+    // Lowest and highest block offset in each column the Piece covers, index 0 is the column at minXOffset
+    final byte[] columnBottoms;
+    final byte[] columnTops;
+    // Sum of the height differences between the tops of neighbouring columns of the Piece, the bumpiness the Piece
+    // adds between its own columns when it is placed without holes
+    final int topBumpiness;
+
+    private PieceOrientation clockwise;
+    private PieceOrientation counterClockwise;
+
+    static {
+        for (PieceColour pieceColour : PieceColour.values()) {
+            int count = 0;
+            for (PieceOrientation orientation : values()) {
+                if (orientation.pieceColour == pieceColour) count++;
+            }
+
+            PieceOrientation[] orientations = new PieceOrientation[count];
+            int index = 0;
+            for (PieceOrientation orientation : values()) {
+                if (orientation.pieceColour == pieceColour) orientations[index++] = orientation;
+            }
+
+            // Link each orientation to its neighbours, wrapping around at the ends
+            for (int i = 0; i < count; i++) {
+                orientations[i].clockwise = orientations[(i + 1) % count];
+                orientations[i].counterClockwise = orientations[(i + count - 1) % count];
+            }
+
+            orientationsByColour[pieceColour.ordinal()] = orientations;
+        }
+    }
+
+    PieceOrientation(PieceColour pieceColour, int[] xOffsets, int[] yOffsets) {
+        this.pieceColour = pieceColour;
+        this.xOffsets = new byte[4];
+        this.yOffsets = new byte[4];
+
+        int minX = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < 4; i++) {
+            this.xOffsets[i] = (byte) xOffsets[i];
+            this.yOffsets[i] = (byte) yOffsets[i];
+
+            minX = Math.min(minX, xOffsets[i]);
+            maxX = Math.max(maxX, xOffsets[i]);
+            minY = Math.min(minY, yOffsets[i]);
+            maxY = Math.max(maxY, yOffsets[i]);
+        }
+
+        minXOffset = (byte) minX;
+        maxXOffset = (byte) maxX;
+        minYOffset = (byte) minY;
+        maxYOffset = (byte) maxY;
+
+        // Find the lowest and highest block in every column
+        columnBottoms = new byte[maxX - minX + 1];
+        columnTops = new byte[maxX - minX + 1];
+        for (int column = 0; column < columnBottoms.length; column++) {
+            columnBottoms[column] = Byte.MAX_VALUE;
+            columnTops[column] = Byte.MIN_VALUE;
+        }
+
+        for (int i = 0; i < 4; i++) {
+            int column = xOffsets[i] - minX;
+            columnBottoms[column] = (byte) Math.min(columnBottoms[column], yOffsets[i]);
+            columnTops[column] = (byte) Math.max(columnTops[column], yOffsets[i]);
+        }
+
+        int bumpiness = 0;
+        for (int column = 1; column < columnTops.length; column++) {
+            bumpiness += Math.abs(columnTops[column] - columnTops[column - 1]);
+        }
+        topBumpiness = bumpiness;
+    }
+
+    /**
+     * @return The orientation after rotating clockwise
+     */
+    PieceOrientation getClockwiseRotation() {
+        return clockwise;
+    }
+
+    /**
+     * @return The orientation after rotating counterclockwise
+     */
+    PieceOrientation getCounterClockwiseRotation() {
+        return counterClockwise;
+    }
+
+    /**
+     * @return Width of the orientation in blocks
+     */
+    int getWidth() {
+        return columnBottoms.length;
+    }
+
+    /**
+     * @param pieceColour Piece to get the orientation of
+     * @return The orientation the Piece spawns in
+     */
+    static PieceOrientation getSpawnOrientation(PieceColour pieceColour) {
+        return orientationsByColour[pieceColour.ordinal()][0];
+    }
+
+    /**
+     * @param pieceColour Piece to count the orientations of
+     * @return The number of distinct orientations of the Piece, 1 for O, 2 for I, S and Z and 4 for the others
+     */
+    static int getOrientationCount(PieceColour pieceColour) {
+        return orientationsByColour[pieceColour.ordinal()].length;
+    }
+}
@@ -0,0 +1,137 @@
+package core;
+
+import core.Piece.PieceColour;
+
+import java.util.Arrays;
+
+/**
+ * Undo stack of the Pieces placed on a Board, used to backtrack out of dead ends instead of resetting the Board.
+ * <p>
+ * When a placement is popped it is also excluded at its level of the stack, so the next Piece placed at that level
+ * has to go somewhere else. Exclusions are kept in level order, popping back below a level drops every exclusion
+ * above it since the board they were made on no longer exists
+ */
+class PlacementHistory {
+    // Placed Pieces, index 0 is the first Piece placed on the Board
+    private PieceOrientation[] orientations = new PieceOrientation[64];
+    private int[] xPositions = new int[64];
+    private int[] yPositions = new int[64];
+    // Tower goal completed by each placement, null if it didn't complete one
+    private TowerGoal[] completedGoals = new TowerGoal[64];
+    // Whether each placement held the Piece it replaced, and what was held before it
+    private boolean[] usedHolds = new boolean[64];
+    private PieceColour[] previousHolds = new PieceColour[64];
+    private int size;
+
+    // Placements that have been backtracked out of and the level of the stack they were made at
+    private int[] excludedLevels = new int[16];
+    private PieceOrientation[] excludedOrientations = new PieceOrientation[16];
+    private int[] excludedXPositions = new int[16];
+    private int excludedCount;
+
+    /**
+     * Records a placement at the top of the stack
+     *
+     * @param orientation   Orientation of the placed Piece
+     * @param x             Column of the center of the placed Piece
+     * @param y             Row of the center of the placed Piece
+     * @param completedGoal Tower goal the placement completed, or null
+     * @param usedHold      true if the Piece that was due to be placed was held instead
+     * @param previousHold  Piece that was held before the placement, or null
+     */
+    void push(PieceOrientation orientation, int x, int y, TowerGoal completedGoal, boolean usedHold,
+              PieceColour previousHold) {
+        if (size == orientations.length) {
+            orientations = Arrays.copyOf(orientations, size * 2);
+            xPositions = Arrays.copyOf(xPositions, size * 2);
+            yPositions = Arrays.copyOf(yPositions, size * 2);
+            completedGoals = Arrays.copyOf(completedGoals, size * 2);
+            usedHolds = Arrays.copyOf(usedHolds, size * 2);
+            previousHolds = Arrays.copyOf(previousHolds, size * 2);
+        }
+
+        orientations[size] = orientation;
+        xPositions[size] = x;
+        yPositions[size] = y;
+        completedGoals[size] = completedGoal;
+        usedHolds[size] = usedHold;
+        previousHolds[size] = previousHold;
+        size++;
+    }
+
+    /**
+     * Removes the placement at the top of the stack and excludes it, so it won't be tried again at this level
+     */
+    void popAndExclude() {
+        size--;
+
+        // Exclusions above this level were made on top of the placement being popped
+        while (excludedCount > 0 && excludedLevels[excludedCount - 1] > size) excludedCount--;
+
+        if (excludedCount == excludedLevels.length) {
+            excludedLevels = Arrays.copyOf(excludedLevels, excludedCount * 2);
+            excludedOrientations = Arrays.copyOf(excludedOrientations, excludedCount * 2);
+            excludedXPositions = Arrays.copyOf(excludedXPositions, excludedCount * 2);
+        }
+
+        excludedLevels[excludedCount] = size;
+        excludedOrientations[excludedCount] = orientations[size];
+        excludedXPositions[excludedCount] = xPositions[size];
+        excludedCount++;
+
+        completedGoals[size] = null;
+    }
+
+    /**
+     * @param orientation Orientation of the Piece
+     * @param x           Column of the center of the Piece
+     * @return true if the placement has already been backtracked out of at the current level, false otherwise
+     */
+    boolean isExcluded(PieceOrientation orientation, int x) {
+        for (int i = excludedCount - 1; i >= 0 && excludedLevels[i] == size; i--) {
+            if (excludedOrientations[i] == orientation && excludedXPositions[i] == x) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Removes every placement and exclusion
+     */
+    void clear() {
+        Arrays.fill(completedGoals, 0, size, null);
+        size = 0;
+        excludedCount = 0;
+    }
+
+    /**
+     * @return Number of placements on the stack
+     */
+    int size() {
+        return size;
+    }
+
+    PieceOrientation getLastOrientation() {
+        return orientations[size - 1];
+    }
+
+    int getLastX() {
+        return xPositions[size - 1];
+    }
+
+    int getLastY() {
+        return yPositions[size - 1];
+    }
+
+    TowerGoal getLastCompletedGoal() {
+        return completedGoals[size - 1];
+    }
+
+    boolean getLastUsedHold() {
+        return usedHolds[size - 1];
+    }
+
+    PieceColour getLastPreviousHold() {
+        return previousHolds[size - 1];
+    }
+}
@@ -1,87 +1,80 @@
 package core;
 
+/**
+ * Holds information about the board after a piece was placed. Candidates are scored as they are found, so a Board
+ * keeps a couple of these and overwrites them for every candidate instead of creating one per candidate
+ */
 public class PotentialBoardState {
 
-    private static float heightDiffMultiplier;
-    private static float bumpinessMultiplier;
-    private static float goalDistScoreMultiplier;
+    // Strategy every Board starts scoring its candidates with, see Board#getScoringStrategy()
+    private static ScoringStrategy scoringStrategy = WeightedScoring.flatStacking();
 
-    private Piece.PieceColour pieceColour;
+    private Board board;
+    PieceOrientation orientation;
     int pieceX;
     int pieceY;
-    private int rotateCount;
-    private int boardHeightDiff;
+    // Features of the board with the Piece placed, extracted once and then scored
+    BoardFeatures features = new BoardFeatures();
     float score;
 
-    private float bumpiness;
+    PotentialBoardState(Board board) {
+        this.board = board;
+    }
 
-    /*
-    This class holds information about the board after a piece was placed
+    /**
+     * Overwrites this state with a Piece that has just been placed on the board and scores it
+     *
+     * @param orientation Orientation of the placed Piece
+     * @param pieceX      Column of the center of the placed Piece
+     * @param pieceY      Row of the center of the placed Piece
      */
-    PotentialBoardState(Piece.PieceColour pieceColour, int pieceX, int pieceY, int rotateCount, int boardHeightDiff) {
-        this.pieceColour = pieceColour;
+    void set(PieceOrientation orientation, int pieceX, int pieceY) {
+        this.orientation = orientation;
         this.pieceX = pieceX;
         this.pieceY = pieceY;
-        this.rotateCount = rotateCount;
-        this.boardHeightDiff = boardHeightDiff;
-
-        this.bumpiness = 0;
-        // Calculate bumpiness
-        for (int i = 0; i < Board.board.width - 1; i++) {
-            bumpiness += Math.abs(Board.getColumnHeight(i) - Board.getColumnHeight(i + 1));
-        }
-
-
-        // Difference between the target height difference and the height difference of the board
-        float heightDiffDifference = Math.abs(Window.heightDiff - boardHeightDiff);
-
-        // Distance between the current goal X and this piece's X position
-        // TODO: Perhaps change the goalDist to be the euclidean distance between the tower goal and this piece, see
-        //  how it affects the shape of towers
-        float goalDistScore = 0;
-        if (goalDistScoreMultiplier != 0) {
-            float goalDist = Math.abs((Board.currentTowerGoal.getBoardX() - pieceX));
-            goalDistScore = (float) Math.exp(goalDist / 10f);
-
-        }
-
-
-        // The closer the score is to 0, the more desirable it is
-        score =
-                (heightDiffMultiplier * heightDiffDifference) + (bumpinessMultiplier * bumpiness * 2) + (goalDistScoreMultiplier * goalDistScore);
 
+        features.extract(board, pieceX);
+        score = board.getScoringStrategy().score(features);
     }
 
     /**
-     * @return The piece that is defined by this BoardState.
+     * Overwrites this state with a Piece placement and scores it, without the Piece having to be on the board
+     *
+     * @param orientation Orientation of the Piece
+     * @param pieceX      Column of the center of the Piece
+     * @param pieceY      Row of the center of the Piece
      */
-    Piece getPlacedPiece() {
-        Piece newPiece = new Piece(pieceColour, pieceX, pieceY);
-
-        for (int i = 0; i < rotateCount; i++) {
-            newPiece.rotatePieceClockwise();
-        }
+    void setWithoutPlacing(PieceOrientation orientation, int pieceX, int pieceY) {
+        this.orientation = orientation;
+        this.pieceX = pieceX;
+        this.pieceY = pieceY;
 
-        return newPiece;
+        features.extractWith(board, orientation, pieceX, pieceY);
+        score = board.getScoringStrategy().score(features);
     }
 
-    // TODO: Move multiplier setting in Window to this class with presets for flat stacking and tower stacking
-
-    static void setHeightDiffMultiplier(float heightDiffMultiplier) {
-        PotentialBoardState.heightDiffMultiplier = heightDiffMultiplier;
+    /**
+     * Overwrites this state with a copy of another state
+     */
+    void copyFrom(PotentialBoardState other) {
+        orientation = other.orientation;
+        pieceX = other.pieceX;
+        pieceY = other.pieceY;
+        features.copyFrom(other.features);
+        score = other.score;
     }
 
-    static void setBumpinessMultiplier(float bumpinessMultiplier) {
-        PotentialBoardState.bumpinessMultiplier = bumpinessMultiplier;
+    static void setScoringStrategy(ScoringStrategy scoringStrategy) {
+        PotentialBoardState.scoringStrategy = scoringStrategy;
     }
 
-    static void setGoalDistScoreMultiplier(float goalDistScoreMultiplier) {
-        PotentialBoardState.goalDistScoreMultiplier = goalDistScoreMultiplier;
+    static ScoringStrategy getScoringStrategy() {
+        return scoringStrategy;
     }
 
     public String toString() {
-        return pieceColour.name() + " piece | X : " + pieceX + " | Y : " + pieceY + " | RC : " + rotateCount + " | " +
-                "HD : " + boardHeightDiff + " | B : " + bumpiness + " | Score : " + score;
+        return orientation.pieceColour.name() + " piece | X : " + pieceX + " | Y : " + pieceY + " | O : " +
+                orientation + " | " + features + " | Score : " + score;
     }
 
 }
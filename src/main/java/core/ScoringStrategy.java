@@ -0,0 +1,25 @@
+package core;
+
+/**
+ * Scores candidates from their board features. The closer the score is to 0, the more desirable the candidate is
+ */
+interface ScoringStrategy {
+
+    /**
+     * @param features Features of the board with the candidate placed
+     * @return Score of the candidate
+     */
+    float score(BoardFeatures features);
+
+    /**
+     * Works out a score that no placement of the Piece in this position can beat, without placing it or checking that
+     * it can go there. Candidates whose bound is worse than the best score found so far can be skipped. The bound must
+     * never be more than the score the candidate would get, so that no candidate as good as the best is ever skipped
+     *
+     * @param board       Board without the Piece placed
+     * @param orientation Orientation of the Piece
+     * @param pieceX      Column of the center of the Piece
+     * @return A score that is no more than the candidate's score
+     */
+    float lowerBound(Board board, PieceOrientation orientation, int pieceX);
+}
@@ -0,0 +1,173 @@
+package core;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Simulates a Board on its own thread for the window, so a slow frame doesn't hold up generation and a slow placement
+ * doesn't hold up drawing. The window never touches the Board. It reads {@link BoardSnapshot}s and controls the
+ * simulation by sending {@link Command}s.
+ * <p>
+ * Snapshots are triple buffered. The simulation thread fills its back snapshot and swaps it into the handoff, and the
+ * window swaps its front snapshot for whatever is in the handoff when that is newer. Each swap is a single
+ * AtomicReference exchange, so neither side waits for the other and a snapshot is only ever held by one side
+ */
+class SimulationThread extends Thread {
+
+    /**
+     * Messages the window sends to the simulation
+     */
+    enum Command {
+        // Pause if running, start if paused
+        TOGGLE_PAUSE,
+        // Save the Board as it is now as the next image, without resetting it
+        SAVE
+    }
+
+    private Board board;
+    private ImageWriter imageWriter;
+
+    private LinkedBlockingQueue<Command> commands = new LinkedBlockingQueue<>();
+    private boolean paused;
+    private int saveCount;
+
+    // Snapshot being filled, the newest published snapshot, and the next sequence number
+    private BoardSnapshot back;
+    private AtomicReference<BoardSnapshot> handoff;
+    private long sequence = 1;
+
+    // Placements made since placementsPerSecond was last updated
+    private int placementsThisSecond;
+    private long placementCountStart = System.nanoTime();
+    private int placementsPerSecond;
+
+    /**
+     * @param board       Board to simulate, only used by this thread once it has started
+     * @param imageWriter Writes the images of finished Boards
+     */
+    SimulationThread(Board board, ImageWriter imageWriter) {
+        super("Simulation");
+        setDaemon(true);
+
+        this.board = board;
+        this.imageWriter = imageWriter;
+        board.trackChangedCells = true;
+
+        back = new BoardSnapshot(board.board.width, board.board.visibleHeight);
+        // Sequence 0 marks a snapshot that hasn't been filled yet, so the window never takes it
+        handoff = new AtomicReference<>(new BoardSnapshot(board.board.width, board.board.visibleHeight));
+    }
+
+    /**
+     * Sends a command to the simulation, it is carried out before the next Pieces are placed
+     */
+    void send(Command command) {
+        commands.add(command);
+    }
+
+    /**
+     * Swaps the window's snapshot for the newest one, if a newer one has been published
+     *
+     * @param front Snapshot the window is showing, null if it hasn't been given one yet. It is handed back to the
+     *              simulation thread if a newer one is returned
+     * @return The newest snapshot, which belongs to the window until it is passed back in. front if nothing newer has
+     * been published
+     */
+    BoardSnapshot takeSnapshot(BoardSnapshot front) {
+        long shown = front == null ? 0 : front.sequence;
+        if (handoff.get().sequence <= shown) return front;
+
+        // Only the simulation thread puts snapshots in the handoff, and it only puts newer ones, so what comes out is at
+        // least as new as what was checked
+        return handoff.getAndSet(front != null ? front : new BoardSnapshot(back.width, back.height));
+    }
+
+    @Override
+    public void run() {
+        publish();
+
+        while (!isInterrupted()) {
+            // While there is nothing to simulate, wait for a command instead of spinning
+            if (paused || saveCount == Window.argOutputNum) {
+                try {
+                    Command command = commands.poll(100, TimeUnit.MILLISECONDS);
+                    if (command != null) carryOut(command);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+
+            Command command;
+            while ((command = commands.poll()) != null) carryOut(command);
+
+            if (!paused && saveCount < Window.argOutputNum) simulateForFrameBudget();
+
+            publish();
+        }
+    }
+
+    /**
+     * Places Pieces until the frame budget runs out, at least one. Every finished Board is saved and reset
+     */
+    private void simulateForFrameBudget() {
+        long deadline = System.nanoTime() + Window.argFrameBudget * 1000000L;
+
+        do {
+            board.simulateCurrentPiece();
+            board.loadNextPieceFromQueue();
+            placementsThisSecond++;
+
+            if (board.shouldSaveAndResetBoard) {
+                save();
+                board.resetBoard();
+                board.shouldSaveAndResetBoard = false;
+            }
+        } while (saveCount < Window.argOutputNum && System.nanoTime() < deadline);
+
+        long now = System.nanoTime();
+        if (now - placementCountStart >= 1000000000L) {
+            placementsPerSecond = (int) (placementsThisSecond * 1000000000L / (now - placementCountStart));
+            placementsThisSecond = 0;
+            placementCountStart = now;
+        }
+    }
+
+    private void carryOut(Command command) {
+        switch (command) {
+            case TOGGLE_PAUSE:
+                paused = !paused;
+                break;
+            case SAVE:
+                if (saveCount < Window.argOutputNum) save();
+                break;
+        }
+    }
+
+    /**
+     * Renders the Board and hands it to the image writer as the next image
+     */
+    private void save() {
+        imageWriter.submit(BoardRenderer.render(board.board, Window.cellDiameter), saveCount + Window.argFileType);
+        saveCount++;
+    }
+
+    /**
+     * Fills the back snapshot from the Board and swaps it into the handoff, once the window has taken the snapshot
+     * before it
+     */
+    private void publish() {
+        // If the window hasn't taken the last snapshot yet there's no need for a newer one, this keeps big boards from
+        // being copied after every placement. It also means the window sees every snapshot, so none of the changed cells
+        // are lost
+        if (sequence > 1 && handoff.get().sequence == sequence - 1) return;
+
+        back.copyFrom(board);
+        back.placementsPerSecond = placementsPerSecond;
+        back.saveCount = saveCount;
+        back.paused = paused;
+        back.sequence = sequence++;
+
+        back = handoff.getAndSet(back);
+    }
+}
@@ -0,0 +1,137 @@
+package core;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes an image a band of board rows at a time, so a tall image never has to be held in memory. Rows can only be
+ * written once they will never change again, and they are finished from the bottom of the board up, so the image is
+ * written as a 24 bit BMP, which stores its rows bottom first. The size of the image has to be known before the first
+ * row is written
+ */
+class StreamingImageWriter {
+    private static final int HEADER_SIZE = 54;
+
+    private OutputStream out;
+    private String fileName;
+    private int cellDiameter;
+    private int imageWidth;
+    private int imageHeight;
+    // Bytes in each row of the file, rows are padded to a multiple of 4 bytes
+    private int rowSize;
+    private int rowsWritten;
+
+    // Pixels of the band being written, and the bytes of one row of the file
+    private int[] bandPixels = new int[0];
+    private byte[] rowBytes;
+
+    /**
+     * Creates the file and writes its header
+     *
+     * @param fileName      Name of the file including the extension
+     * @param widthInBlocks Width of the board in blocks
+     * @param rowCount      Number of board rows the image will have
+     * @param cellDiameter  Diameter of each Block in pixels
+     * @throws IOException If the file can't be written, or the image is too big for a BMP
+     */
+    StreamingImageWriter(String fileName, int widthInBlocks, int rowCount, int cellDiameter) throws IOException {
+        this.fileName = fileName;
+        this.cellDiameter = cellDiameter;
+        imageWidth = widthInBlocks * cellDiameter;
+        imageHeight = rowCount * cellDiameter;
+        rowSize = (imageWidth * 3 + 3) & ~3;
+        rowBytes = new byte[rowSize];
+
+        long fileSize = HEADER_SIZE + (long) rowSize * imageHeight;
+        if (fileSize > 0xFFFFFFFFL) throw new IOException(fileName + " would be bigger than a BMP can be");
+
+        out = new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16);
+
+        byte[] header = new byte[HEADER_SIZE];
+        header[0] = 'B';
+        header[1] = 'M';
+        putInt(header, 2, (int) fileSize);
+        putInt(header, 10, HEADER_SIZE);
+        putInt(header, 14, 40);
+        putInt(header, 18, imageWidth);
+        // A positive height means the rows are stored bottom first
+        putInt(header, 22, imageHeight);
+        header[26] = 1;
+        header[28] = 24;
+        putInt(header, 34, (int) (fileSize - HEADER_SIZE));
+        out.write(header);
+    }
+
+    /**
+     * Appends a band of board rows to the image, above the rows already written
+     *
+     * @param board    Board to take the rows from
+     * @param firstRow Index of the lowest row of the band
+     * @param rowCount Number of rows in the band
+     * @throws IOException If the rows can't be written
+     */
+    void writeRows(BoardArray board, int firstRow, int rowCount) throws IOException {
+        if (rowsWritten + rowCount * cellDiameter > imageHeight) {
+            throw new IOException("Too many rows written to " + fileName);
+        }
+
+        int pixelCount = imageWidth * rowCount * cellDiameter;
+        if (bandPixels.length < pixelCount) bandPixels = new int[pixelCount];
+        BoardRenderer.renderRows(board, firstRow, rowCount, cellDiameter, bandPixels);
+
+        // The band is rendered top row first, the file wants the bottom row first
+        for (int row = rowCount * cellDiameter - 1; row >= 0; row--) {
+            int firstPixel = row * imageWidth;
+
+            for (int i = 0; i < imageWidth; i++) {
+                int pixel = bandPixels[firstPixel + i];
+                rowBytes[i * 3] = (byte) pixel;
+                rowBytes[i * 3 + 1] = (byte) (pixel >> 8);
+                rowBytes[i * 3 + 2] = (byte) (pixel >> 16);
+            }
+
+            out.write(rowBytes);
+        }
+
+        rowsWritten += rowCount * cellDiameter;
+    }
+
+    /**
+     * Finishes the file, every row of the image must have been written
+     *
+     * @throws IOException If the file can't be written, or rows are missing
+     */
+    void close() throws IOException {
+        out.close();
+
+        if (rowsWritten != imageHeight) {
+            throw new IOException(fileName + " is missing " + (imageHeight - rowsWritten) + " rows of pixels");
+        }
+    }
+
+    /**
+     * Closes the file and deletes it, for an image that can't be finished, so a partial image isn't left behind
+     */
+    void abandon() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            // The file is deleted anyway
+        }
+
+        new File(fileName).delete();
+    }
+
+    /**
+     * Writes a little endian int into a byte array
+     */
+    private static void putInt(byte[] bytes, int index, int value) {
+        bytes[index] = (byte) value;
+        bytes[index + 1] = (byte) (value >> 8);
+        bytes[index + 2] = (byte) (value >> 16);
+        bytes[index + 3] = (byte) (value >> 24);
+    }
+}
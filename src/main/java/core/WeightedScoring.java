@@ -0,0 +1,94 @@
+package core;
+
+/**
+ * Scores a candidate with a weighted sum of its board features. Filled rows are subtracted since more of them is
+ * better, the goal distance is weighted exponentially so that candidates far from the Tower goal are ruled out
+ */
+class WeightedScoring implements ScoringStrategy {
+    private float heightDiffWeight;
+    private float bumpinessWeight;
+    private float wellDepthWeight;
+    private float filledRowsWeight;
+    private float goalDistanceWeight;
+
+    WeightedScoring(float heightDiffWeight, float bumpinessWeight, float wellDepthWeight, float filledRowsWeight,
+                    float goalDistanceWeight) {
+        this.heightDiffWeight = heightDiffWeight;
+        this.bumpinessWeight = bumpinessWeight;
+        this.wellDepthWeight = wellDepthWeight;
+        this.filledRowsWeight = filledRowsWeight;
+        this.goalDistanceWeight = goalDistanceWeight;
+    }
+
+    /**
+     * @return Weights for a flat board, only the height difference and bumpiness matter
+     */
+    static WeightedScoring flatStacking() {
+        return new WeightedScoring(1, 1, 0, 0, 0);
+    }
+
+    /**
+     * @return Weights for a flat board that also avoids wells and prefers filling rows, for comparing with
+     * {@link WeightedScoring#flatStacking()}
+     */
+    static WeightedScoring flatStackingAvoidingWells() {
+        return new WeightedScoring(1, 1, 1, 1, 0);
+    }
+
+    /**
+     * @return Weights for building Towers, the height difference is ignored until the Towers are built
+     */
+    static WeightedScoring towers() {
+        return new WeightedScoring(0, 1, 0, 0, 1);
+    }
+
+    @Override
+    public float lowerBound(Board board, PieceOrientation orientation, int pieceX) {
+        // The bound is worked out term by term, which only works if no term can lower the score
+        if (heightDiffWeight < 0 || bumpinessWeight < 0 || wellDepthWeight < 0 || filledRowsWeight < 0 ||
+                goalDistanceWeight < 0) {
+            return -Float.MAX_VALUE;
+        }
+
+        BoardArray boardArray = board.board;
+        int firstColumn = pieceX + orientation.minXOffset;
+        int lastColumn = firstColumn + orientation.getWidth() - 1;
+
+        // The height difference is at least its lower bound, so the difference from the target is at least how far the
+        // bound is above the target. Bumpiness outside the Piece doesn't change and the best case next to the Piece is
+        // no difference at all, but the differences between the Piece's own columns are fixed by its shape. Wells
+        // outside the Piece don't change and the best case near it is no wells. At best every visible row is filled.
+        // The goal distance only depends on where the Piece is, so it is exact
+        float goalDistScore = 0;
+        if (goalDistanceWeight != 0) {
+            goalDistScore = (float) Math.exp(BoardFeatures.calculateGoalDistance(board, pieceX) / 10f);
+        }
+
+        int heightDiffLowerBound = boardArray.getHeightDiffLowerBound(orientation, pieceX);
+        float heightDiffDifference = Math.max(heightDiffLowerBound - Window.heightDiff, 0);
+        float bumpiness = boardArray.getBumpinessOutside(firstColumn, lastColumn) + orientation.topBumpiness;
+
+        // The terms are added in the same order as the score, so rounding can't make the bound larger than the score
+        return (heightDiffWeight * heightDiffDifference) + (bumpinessWeight * bumpiness * 2) +
+                (goalDistanceWeight * goalDistScore) +
+                (wellDepthWeight * boardArray.getWellDepthOutside(firstColumn, lastColumn)) -
+                (filledRowsWeight * boardArray.visibleHeight);
+    }
+
+    @Override
+    public float score(BoardFeatures features) {
+        // Difference between the target height difference and the height difference of the board
+        float heightDiffDifference = Math.abs(Window.heightDiff - features.heightDiff);
+
+        // TODO: Perhaps change the goalDist to be the euclidean distance between the tower goal and this piece, see
+        //  how it affects the shape of towers
+        float goalDistScore = 0;
+        if (goalDistanceWeight != 0) goalDistScore = (float) Math.exp(features.goalDistance / 10f);
+
+        float bumpiness = features.bumpiness;
+
+        return (heightDiffWeight * heightDiffDifference) + (bumpinessWeight * bumpiness * 2) +
+                (goalDistanceWeight * goalDistScore) + (wellDepthWeight * features.wellDepth) -
+                (filledRowsWeight * features.filledRows);
+    }
+}
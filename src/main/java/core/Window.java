@@ -1,6 +1,9 @@
 package core;
 
 import processing.core.PApplet;
+import processing.core.PGraphics;
+
+import java.util.Random;
 
 public class Window extends PApplet {
     // Input arguments
@@ -9,23 +12,47 @@ public class Window extends PApplet {
     protected static int cellDiameter;
     static int argSeed = 2;
     static int heightDiff;
-    private static Board board = null;
+    // Board being generated, once the simulation has started only the simulation thread touches it
+    protected Board board = null;
+    // Simulates the Board on its own thread, the window only sees the snapshots it publishes
+    private SimulationThread simulation;
+    // Newest snapshot taken from the simulation, null until the first one is published
+    private BoardSnapshot front;
+    // Holds the drawn Blocks between frames, so only the cells that changed need drawing again
+    private PGraphics canvas;
+    // Sequence of the snapshot last drawn on the canvas, -1 until the canvas is first drawn
+    private long drawnSequence = -1;
 
     static boolean logging = true;
-    static boolean placePieces = true;
-    static boolean shouldSaveAndResetBoard = false;
-    private static float chaos;
+    static float chaos;
     static boolean debug = true;
-    private static int saveCount = 0;
+    // Writes saved frames on another thread, so the sketch keeps simulating while they are encoded
+    private static ImageWriter imageWriter;
     // User Settings
-    private static String argFileType = ".tiff"; // Default .tiff
-    private static int argOutputNum = 1; // Default 1
+    static String argFileType = ".tiff"; // Default .tiff
+    static int argOutputNum = 1; // Default 1
+    private static boolean headless = false; // Default false
+    static int argThreads = 1; // Default 1
+    static int argBacktrackDepth = 0; // Default 0, no backtracking
+    static boolean argHold = false; // Default false
+    static int argLookahead = 1; // Default 1, no lookahead
+    static int argBeamWidth = 4; // Default 4
+    static boolean argParallel = false; // Default false
+    private static ScoringStrategy argScoring; // Defaults to flat stacking, or towers if there is a height difference
+    static int argFrameBudget = 12; // Default 12 milliseconds
+    static boolean argStream = false; // Default false
 
     private static long start = System.currentTimeMillis();
     static long end;
 
     public static void main(String[] args) {
         parseArguments(args);
+
+        if (headless) {
+            HeadlessGenerator.run();
+            System.exit(0);
+        }
+
         PApplet.main("core.Window");
     }
 
@@ -42,7 +69,7 @@ public class Window extends PApplet {
             System.out.println("    DIAMETER: Integer - Diameter of the blocks in pixels");
             System.out.println("    HEIGHT DIFFERENCE: Integer - Number of blocks difference between the highest " +
                     "block and lowest block on the board");
-            System.out.println("    CHAOS: Integer - Degree of chaos");
+            System.out.println("    CHAOS: Integer - Percentage of the visible cells that are allowed to be holes");
             System.out.println("    OPTIONAL ARGUMENTS: ");
 
             System.out.println("        You can specify optional flags after the default arguments in a format " +
@@ -63,6 +90,52 @@ public class Window extends PApplet {
                     "\n         Running the program with the same seed will produce the same set of images. Defaults " +
                     "to an effectively random seed\n");
 
+            System.out.println("        --headless - Generates the images without opening a window. Pieces are " +
+                    "placed as fast as " +
+                    "\n         possible instead of once per frame. Takes no argument\n");
+
+            System.out.println("        --threads - Specifies the number of images generated at the same time when " +
+                    "running with" +
+                    "\n         --headless. Takes an integer between 1 and " + Integer.MAX_VALUE + ". Defaults to 1\n");
+
+            System.out.println("        --backtrack - Specifies how many placed Pieces the program can take back to " +
+                    "get out of a " +
+                    "\n         dead end before it resets the board. Takes an integer between 0 and " +
+                    Integer.MAX_VALUE + ". Defaults to 0,\n         which resets the board at every dead end\n");
+
+            System.out.println("        --hold - Lets the program hold a Piece, each Piece is compared with the held " +
+                    "Piece (or the next " +
+                    "\n         Piece if nothing is held) and the better one is placed. Takes no argument\n");
+
+            System.out.println("        --lookahead - Specifies how many Pieces from the queue are placed ahead, " +
+                    "including the current " +
+                    "\n         Piece, before the current Piece's position is chosen. Takes an integer between 1 and " +
+                    "7. Defaults to 1,\n         which only looks at the current Piece\n");
+
+            System.out.println("        --beamwidth - Specifies how many of the best placement sequences are kept at " +
+                    "each step of the " +
+                    "\n         lookahead. Takes an integer between 1 and 64. Defaults to 4\n");
+
+            System.out.println("        --parallel - Searches the positions for each Piece on every processor, for " +
+                    "very wide boards. " +
+                    "\n         Has no effect with --lookahead. Takes no argument\n");
+
+            System.out.println("        --scoring - Specifies how the positions for each Piece are scored. Takes " +
+                    "flat, which keeps the " +
+                    "\n         board level, towers, which builds towers, or wells, which keeps the board level " +
+                    "while penalising deep\n         wells and favouring filled rows. Defaults to towers if there is a " +
+                    "height difference,\n         otherwise flat\n");
+
+            System.out.println("        --framebudget - Specifies how many milliseconds of each frame are spent " +
+                    "placing Pieces when " +
+                    "\n         running with a window, the window is updated after each slice. Takes an integer between " +
+                    "0 and 1000.\n         Defaults to 12, 0 updates the window after every Piece\n");
+
+            System.out.println("        --stream - Writes each image a band of rows at a time as the board is " +
+                    "finished, so very tall " +
+                    "\n         images don't have to fit in memory. Images are saved as bmp. Needs --headless and a " +
+                    "HEIGHT DIFFERENCE\n         of 0. Takes no argument\n");
+
             System.exit(0);
         }
 
@@ -118,8 +191,8 @@ public class Window extends PApplet {
         }
 
         // Validate any optional arguments
-        // Iterate through the optional argument pairs
-        for (int index = 5; index < args.length; index += 2) {
+        // Iterate through the optional arguments, flags that take an argument consume the next element as well
+        for (int index = 5; index < args.length; index++) {
             String userArg = args[index];
 
             // If the current optional argument isn't valid then print an error message and exit
@@ -128,37 +201,79 @@ public class Window extends PApplet {
                 System.exit(0);
             }
 
+            // If the flag needs an argument and there isn't one, print an error message and exit
+            if (!userArg.equals("--headless") && !userArg.equals("--hold") && !userArg.equals("--parallel") &&
+                    !userArg.equals("--stream") && index + 1 >= args.length) {
+                System.out.println("Optional argument flag " + userArg + " needs an argument");
+                System.exit(0);
+            }
+
             switch (userArg) {
                 case "--filetype":
-                    processFileTypeParameter(args[index + 1]);
+                    processFileTypeParameter(args[++index]);
                     break;
                 case "--seed":
-                    processSeed(args[index + 1]);
+                    processSeed(args[++index]);
                     break;
                 case "--outputnum":
-                    processOutputNum(args[index + 1]);
+                    processOutputNum(args[++index]);
+                    break;
+                case "--headless":
+                    headless = true;
+                    break;
+                case "--threads":
+                    processThreads(args[++index]);
+                    break;
+                case "--backtrack":
+                    processBacktrackDepth(args[++index]);
+                    break;
+                case "--hold":
+                    argHold = true;
+                    break;
+                case "--lookahead":
+                    processLookahead(args[++index]);
+                    break;
+                case "--beamwidth":
+                    processBeamWidth(args[++index]);
+                    break;
+                case "--parallel":
+                    argParallel = true;
+                    break;
+                case "--scoring":
+                    processScoring(args[++index]);
+                    break;
+                case "--framebudget":
+                    processFrameBudget(args[++index]);
+                    break;
+                case "--stream":
+                    argStream = true;
                     break;
             }
         }
 
+        // Rows are only written once they are finished, which only happens in order when the board is filled flat
+        if (argStream && (!headless || heightDiff != 0)) {
+            System.out.println("--stream needs --headless and a HEIGHT DIFFERENCE of 0");
+            System.exit(0);
+        }
+
         // Set score weightings based on parameters, a height difference of 0 should only care about bumpiness and
-        // height difference, not Towers for example
-        if (heightDiff == 0) {
-            PotentialBoardState.setHeightDiffMultiplier(1);
-            PotentialBoardState.setBumpinessMultiplier(1);
-            PotentialBoardState.setGoalDistScoreMultiplier(0);
-        } else {
-            // If we are creating Towers then set Height difference multiplier to 0, it will be changed in the height
-            // difference phase
-            PotentialBoardState.setHeightDiffMultiplier(0);
-            PotentialBoardState.setBumpinessMultiplier(1);
-            PotentialBoardState.setGoalDistScoreMultiplier(1);
+        // height difference, not Towers for example. If we are creating Towers then the height difference is ignored
+        if (argScoring == null) {
+            argScoring = heightDiff == 0 ? WeightedScoring.flatStacking() : WeightedScoring.towers();
         }
+        PotentialBoardState.setScoringStrategy(argScoring);
+
+        // Printing every candidate for every Piece would take longer than generating the images
+        if (headless) logging = false;
 
     }
 
     private static boolean validateArgumentName(String argumentName) {
-        String[] validOptionalArguments = new String[]{"--filetype", "--seed", "--outputnum"};
+        String[] validOptionalArguments = new String[]{"--filetype", "--seed", "--outputnum", "--headless",
+                "--threads", "--backtrack", "--hold",
+                "--lookahead", "--beamwidth", "--parallel",
+                "--scoring", "--framebudget", "--stream"};
 
         // Check if the argument is in the valid argument list
         for (String validArg : validOptionalArguments) {
@@ -219,99 +334,228 @@ public class Window extends PApplet {
         }
     }
 
-    public void settings() {
-        size(widthInBlocks * cellDiameter, heightInBlocks * cellDiameter);
-        board = new Board(widthInBlocks, heightInBlocks);
+    private static void processThreads(String threads) {
+        try {
+            argThreads = Integer.parseInt(threads);
+
+            // Thread count is invalid, throw a Runtime Exception so that the catch block runs
+            if (argThreads < 1) throw new RuntimeException();
+
+            if (logging) System.out.println(threads + " thread count is valid");
+        } catch (Exception e) {
+            System.out.println(threads + " thread count is not valid. It must be between 1 and " + Integer.MAX_VALUE);
+            System.exit(0);
+        }
     }
 
-    public void draw() {
-        // If we have saved the target number of images, then exit
-        if (saveCount == argOutputNum) {
-            System.out.println("Program has generated " + saveCount + " images. Now exiting");
-            System.out.println("Time: " + (System.currentTimeMillis() - start) / 1000);
+    private static void processBacktrackDepth(String backtrackDepth) {
+        try {
+            argBacktrackDepth = Integer.parseInt(backtrackDepth);
+
+            // Backtrack depth is invalid, throw a Runtime Exception so that the catch block runs
+            if (argBacktrackDepth < 0) throw new RuntimeException();
+
+            if (logging) System.out.println(backtrackDepth + " backtrack depth is valid");
+        } catch (Exception e) {
+            System.out.println(backtrackDepth + " backtrack depth is not valid. It must be between 0 and " +
+                    Integer.MAX_VALUE);
             System.exit(0);
         }
+    }
 
-        if (board != null) {
-            frameRate(50);
-            background(51);
-            strokeWeight(1);
+    private static void processLookahead(String lookahead) {
+        try {
+            argLookahead = Integer.parseInt(lookahead);
 
-//            drawBackboard();
-            drawPlacedBlocks();
+            // Lookahead is invalid, throw a Runtime Exception so that the catch block runs. A bag only has 7 Pieces
+            if (argLookahead < 1 || argLookahead > 7) throw new RuntimeException();
 
-            if (heightDiff != 0) {
-                // Draw all X Goals
-                for (TowerGoal goal : Board.towerGoals) {
-                    fill(255, 0, 0);
-                    ellipse(goal.getBoardX() * cellDiameter,
-                            height - (goal.getBoardY() * cellDiameter), 10, 10);
-                }
+            if (logging) System.out.println(lookahead + " lookahead is valid");
+        } catch (Exception e) {
+            System.out.println(lookahead + " lookahead is not valid. It must be between 1 and 7");
+            System.exit(0);
+        }
+    }
 
-                // Draw the current X Goal
-                fill(0, 255, 0);
-                ellipse(Board.currentTowerGoal.getBoardX() * cellDiameter,
-                        height - (Board.currentTowerGoal.getBoardY() * cellDiameter), 10, 10);
-            }
+    private static void processBeamWidth(String beamWidth) {
+        try {
+            argBeamWidth = Integer.parseInt(beamWidth);
 
+            // Beam width is invalid, throw a Runtime Exception so that the catch block runs
+            if (argBeamWidth < 1 || argBeamWidth > 64) throw new RuntimeException();
 
+            if (logging) System.out.println(beamWidth + " beam width is valid");
+        } catch (Exception e) {
+            System.out.println(beamWidth + " beam width is not valid. It must be between 1 and 64");
+            System.exit(0);
+        }
+    }
 
-            fill(255);
-            text("Piece: " + Piece.PieceColour.identifyColourName(Board.currentPiece.pieceColour.r,
-                    Board.currentPiece.pieceColour.g, Board.currentPiece.pieceColour.b), 20, 20);
+    private static void processScoring(String scoring) {
+        switch (scoring) {
+            case "flat":
+                argScoring = WeightedScoring.flatStacking();
+                break;
+            case "towers":
+                argScoring = WeightedScoring.towers();
+                break;
+            case "wells":
+                argScoring = WeightedScoring.flatStackingAvoidingWells();
+                break;
+            default:
+                System.out.println(scoring + " scoring is not valid. It must be flat, towers or wells");
+                System.exit(0);
         }
 
-        // If we've found an acceptable Board then shouldSaveAndResetBoard will be true. If so, save the Board and reset
-        if (shouldSaveAndResetBoard) {
-            save(saveCount + argFileType);
+        if (logging) System.out.println(scoring + " scoring is valid");
+    }
 
-            Board.resetBoard();
+    private static void processFrameBudget(String frameBudget) {
+        try {
+            argFrameBudget = Integer.parseInt(frameBudget);
+
+            // Frame budget is invalid, throw a Runtime Exception so that the catch block runs
+            if (argFrameBudget < 0 || argFrameBudget > 1000) throw new RuntimeException();
 
-            shouldSaveAndResetBoard = false;
-            saveCount++;
+            if (logging) System.out.println(frameBudget + " frame budget is valid");
+        } catch (Exception e) {
+            System.out.println(frameBudget + " frame budget is not valid. It must be between 0 and 1000");
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Creates the source of randomness for a Board. If the user specified a seed then each Board gets its own seed
+     * derived from it. The headless generator gives each Board a fixed set of image numbers, so running with the same
+     * seed and thread count saves the same images under the same numbers
+     *
+     * @param boardIndex Index of the Board, 0 for the first Board
+     * @return Random to give to the Board
+     */
+    static Random createRandom(int boardIndex) {
+        if (argSeed == -1) {
+            // No seed specified by the user so use a random one
+            return new Random();
+        } else {
+            // Seed has been specified by the user so use that
+            return new Random(argSeed + boardIndex);
         }
+    }
 
-        if (frameCount % 1 == 0 && placePieces) {
-            for (int i = 0; i < 1; i++) {
-                Board.simulateCurrentPiece();
-                Board.loadNextPieceFromQueue();
+    public void settings() {
+        size(widthInBlocks * cellDiameter, heightInBlocks * cellDiameter);
+        board = new Board(widthInBlocks, heightInBlocks, createRandom(0));
+        imageWriter = new ImageWriter(1, 2);
+        simulation = new SimulationThread(board, imageWriter);
+    }
+
+    public void setup() {
+        frameRate(50);
+        canvas = createGraphics(width, height);
+    }
+
+    public void draw() {
+        if (simulation.getState() == Thread.State.NEW) simulation.start();
+
+        front = simulation.takeSnapshot(front);
+        if (front == null) return;
+
+        // If we have saved the target number of images, then exit
+        if (front.saveCount == argOutputNum) {
+            imageWriter.finish();
+            imageWriter.printStatistics();
+            System.out.println("Program has generated " + front.saveCount + " images. Now exiting");
+            System.out.println("Time: " + (System.currentTimeMillis() - start) / 1000);
+            System.exit(0);
+        }
+
+        strokeWeight(1);
+
+//        drawBackboard();
+        drawPlacedBlocks();
+
+        if (heightDiff != 0) {
+            // Draw all X Goals
+            for (TowerGoal goal : front.towerGoals) {
+                fill(255, 0, 0);
+                ellipse(goal.getBoardX() * cellDiameter,
+                        height - (goal.getBoardY() * cellDiameter), 10, 10);
+            }
+
+            // Draw the current X Goal, there isn't one once the Towers are built
+            if (front.currentTowerGoal != null) {
+                fill(0, 255, 0);
+                ellipse(front.currentTowerGoal.getBoardX() * cellDiameter,
+                        height - (front.currentTowerGoal.getBoardY() * cellDiameter), 10, 10);
             }
         }
 
+        fill(255);
+        text("Piece: " + Piece.PieceColour.identifyColourName(front.currentPiece.r, front.currentPiece.g,
+                front.currentPiece.b) + " | Placements per second: " + front.placementsPerSecond +
+                (front.paused ? " | Paused" : ""), 20, 20);
     }
 
     protected void drawBackboard() {
         stroke(0.8f);
 
-        for (int i = 0; i < Board.board.width; i++) {
+        for (int i = 0; i < widthInBlocks; i++) {
             line(i * cellDiameter, 0, i * cellDiameter, height);
         }
 
-        for (int i = 0; i < Board.board.height; i++) {
+        for (int i = 0; i < heightInBlocks; i++) {
             line(0, i * cellDiameter, width, i * cellDiameter);
         }
     }
 
-    protected void drawPlacedBlocks() {
-        noStroke();
-
-        for (int j = 0; j < Board.board.visibleHeight; j++) {
-            for (int i = 0; i < Board.board.width; i++) {
-                Block currentBlock = Board.board.getBlock(i, j);
+    /**
+     * Takes a snapshot straight from the Board, for windows that change the Board themselves instead of running the
+     * simulation
+     */
+    protected void snapshotBoard() {
+        front = new BoardSnapshot(widthInBlocks, heightInBlocks);
+        front.copyAllFrom(board);
+        drawnSequence = -1;
+    }
 
-                if (currentBlock != null) {
-                    fill(currentBlock.r, currentBlock.g, currentBlock.b);
-                    rect(i * cellDiameter, height - ((j + 1) * cellDiameter), cellDiameter,
-                            cellDiameter);
+    /**
+     * Brings the canvas up to date with the newest snapshot and draws it to the window. Only the cells the snapshot says
+     * have changed are drawn, unless it holds the whole board (e.g. after a reset), then every cell is drawn
+     */
+    protected void drawPlacedBlocks() {
+        if (front.sequence != drawnSequence) {
+            canvas.beginDraw();
+
+            if (front.fullRedraw) {
+                canvas.loadPixels();
+                BoardRenderer.upscale(front.cellPixels, front.width, front.height, cellDiameter, canvas.pixels);
+                canvas.updatePixels();
+            } else if (front.changedCellCount > 0) {
+                canvas.noStroke();
+
+                for (int i = 0; i < front.changedCellCount; i++) {
+                    // The snapshot has the top row of the board first, the same way round as the canvas
+                    int cell = front.changedCells[i];
+                    canvas.fill(front.changedColours[i]);
+                    canvas.rect((cell % front.width) * cellDiameter, (cell / front.width) * cellDiameter,
+                            cellDiameter, cellDiameter);
                 }
             }
+
+            canvas.endDraw();
+            drawnSequence = front.sequence;
         }
+
+        image(canvas, 0, 0);
     }
 
     public void keyPressed() {
+        // Space pauses and restarts the simulation, s saves the Board as it is
         if (keyCode == 32) {
-            placePieces = !placePieces;
+            simulation.send(SimulationThread.Command.TOGGLE_PAUSE);
 //            debug = true;
+        } else if (key == 's') {
+            simulation.send(SimulationThread.Command.SAVE);
         }
     }
 
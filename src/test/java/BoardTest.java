@@ -3,6 +3,7 @@ import core.Piece;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -12,7 +13,7 @@ class BoardTest {
 
     @Test
     void test_GeneratingPieceSequence_HasAllPieces_And_Has7Pieces() {
-        ArrayList<Piece.PieceColour> pieceList = Board.generatePieceList();
+        ArrayList<Piece.PieceColour> pieceList = new Board(10, 20, new Random(2)).generatePieceList();
 
         boolean areAllPiecesPresent =
                 pieceList.contains(Piece.PieceColour.O) && pieceList.contains(Piece.PieceColour.I) &&
@@ -0,0 +1,111 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class BeamSearchTest {
+    private static final int MOVES = 20;
+    private static final int TRIALS = 20000;
+
+
+    @Test
+    void test_TiedMoves_AreEquallyLikelyToBePicked_WhenBeamIsFull() {
+        Board board = new Board(30, 20, new Random(2));
+        BeamSearch beam = new BeamSearch(board, new Random(3), 2, 4);
+
+        int[] picks = pickMoves(board, beam, new float[MOVES]);
+
+        // Each of the 20 tied moves should be picked 1000 times, give or take a few standard deviations
+        for (int pick : picks) {
+            assertTrue(Math.abs(pick - TRIALS / MOVES) < 200, "Pick count " + pick);
+        }
+    }
+
+    @Test
+    void test_TiedMoves_AreEquallyLikelyToBePicked_WhenWorseMovesArePushedOut() {
+        Board board = new Board(30, 20, new Random(2));
+        BeamSearch beam = new BeamSearch(board, new Random(3), 2, 4);
+
+        // Every third move is worse, the beam fills with worse moves first and they are pushed out by the tied ones
+        float[] scores = new float[MOVES];
+        for (int i = 0; i < MOVES; i += 3) {
+            scores[i] = 1;
+        }
+
+        int[] picks = pickMoves(board, beam, scores);
+
+        for (int i = 0; i < MOVES; i++) {
+            if (scores[i] == 1) {
+                assertEquals(0, picks[i]);
+            } else {
+                assertTrue(Math.abs(picks[i] - TRIALS / (MOVES - 7)) < 200, "Pick count " + picks[i]);
+            }
+        }
+    }
+
+    @Test
+    void test_TiedMove_IsKeptAsOftenAsTheTiedMovesBeforeIt_AfterOneWasPushedOut() throws ReflectiveOperationException {
+        Board board = new Board(30, 20, new Random(2));
+        BeamSearch beam = new BeamSearch(board, new Random(3), 1, 2);
+        PotentialBoardState move = new PotentialBoardState(board);
+        move.orientation = PieceOrientation.getSpawnOrientation(Piece.PieceColour.O);
+
+        // Search always picks the better move, so the tied move that is kept can only be seen in the beam itself
+        Field firstMovesField = BeamSearch.class.getDeclaredField("firstMoves");
+        firstMovesField.setAccessible(true);
+        PotentialBoardState[] firstMoves = (PotentialBoardState[]) firstMovesField.get(beam);
+
+        // The better move pushes out one of the first two, then a third move ties with them. Each of the three should
+        // be the one left in the beam a third of the time
+        float[] scores = new float[]{5, 5, 1, 5};
+        int[] kept = new int[scores.length];
+        for (int trial = 0; trial < TRIALS; trial++) {
+            beam.clear();
+            for (int x = 0; x < scores.length; x++) {
+                move.pieceX = x;
+                move.score = scores[x];
+                beam.offer(move);
+            }
+
+            assertEquals(2, firstMoves[0].pieceX);
+            kept[firstMoves[1].pieceX]++;
+        }
+
+        for (int x : new int[]{0, 1, 3}) {
+            assertTrue(Math.abs(kept[x] - TRIALS / 3) < 400, "Kept count " + kept[x]);
+        }
+    }
+
+    /**
+     * Offers a move for each score, from left to right, and searches with nothing in the queue, many times over
+     *
+     * @return Number of times the move in each column was picked
+     */
+    private static int[] pickMoves(Board board, BeamSearch beam, float[] scores) {
+        PotentialBoardState move = new PotentialBoardState(board);
+        PotentialBoardState result = new PotentialBoardState(board);
+        move.orientation = PieceOrientation.getSpawnOrientation(Piece.PieceColour.O);
+        int[] picks = new int[scores.length];
+
+        for (int trial = 0; trial < TRIALS; trial++) {
+            beam.clear();
+            for (int x = 0; x < scores.length; x++) {
+                move.pieceX = x;
+                move.score = scores[x];
+                beam.offer(move);
+            }
+
+            assertTrue(beam.search(new ArrayList<Piece.PieceColour>(), 0, result));
+            picks[result.pieceX]++;
+        }
+
+        return picks;
+    }
+}
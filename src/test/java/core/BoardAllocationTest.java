@@ -0,0 +1,49 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class BoardAllocationTest {
+
+
+    @Test
+    void test_SimulatingPieces_DoesNotAllocatePerCandidate() {
+        Window.logging = false;
+
+        // A wide board has over a thousand candidates per Piece, so anything allocated per candidate adds up to many
+        // kilobytes per Piece
+        Board board = new Board(400, 40, new Random(2));
+
+        // Let the JIT compile the simulation before measuring
+        simulatePieces(board, 2000);
+
+        long before = getAllocatedBytes();
+        int pieces = 500;
+        simulatePieces(board, pieces);
+        long bytesPerPiece = (getAllocatedBytes() - before) / pieces;
+
+        assertTrue(bytesPerPiece < 1024, "Allocated " + bytesPerPiece + " bytes per Piece");
+    }
+
+    private static void simulatePieces(Board board, int pieces) {
+        for (int i = 0; i < pieces; i++) {
+            board.simulateCurrentPiece();
+            board.loadNextPieceFromQueue();
+
+            if (board.shouldSaveAndResetBoard) {
+                board.resetBoard();
+                board.shouldSaveAndResetBoard = false;
+            }
+        }
+    }
+
+    private static long getAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,156 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class BoardArrayTest {
+
+
+    @Test
+    void test_Skyline_MatchesFullScan_AfterRandomSetsAndRemoves() {
+        BoardArray board = new BoardArray(70, 20);
+        Random random = new Random(2);
+
+        for (int i = 0; i < 5000; i++) {
+            int x = random.nextInt(board.width);
+            int y = random.nextInt(board.height);
+            board.set(x, y, random.nextBoolean() ? new Block(1, 1, 1) : null);
+
+            int bumpiness = 0;
+            int wellDepth = 0;
+            int holes = 0;
+            int minHeight = Integer.MAX_VALUE;
+            int maxHeight = Integer.MIN_VALUE;
+            for (int column = 0; column < board.width; column++) {
+                int height = scanColumnHeight(board, column);
+                assertEquals(height, board.getColumnHeight(column));
+
+                for (int row = 0; row < height; row++) {
+                    if (board.getBlock(column, row) == null) holes++;
+                }
+
+                minHeight = Math.min(minHeight, height);
+                maxHeight = Math.max(maxHeight, height);
+                if (column > 0) bumpiness += Math.abs(height - scanColumnHeight(board, column - 1));
+
+                int left = column > 0 ? scanColumnHeight(board, column - 1) : Integer.MAX_VALUE;
+                int right = column < board.width - 1 ? scanColumnHeight(board, column + 1) : Integer.MAX_VALUE;
+                wellDepth += Math.max(Math.min(left, right) - height, 0);
+            }
+
+            assertEquals(bumpiness, board.getBumpiness());
+            assertEquals(wellDepth, board.getWellDepth());
+            assertEquals(holes, board.getHoleCount());
+            assertEquals(minHeight, board.getMinColumnHeight());
+            assertEquals(maxHeight, board.getMaxColumnHeight());
+        }
+    }
+
+    @Test
+    void test_CanPlaceWithoutHoles_OnlyPiecesThatFitTheWells() {
+        // Columns 1 and 3 are 3 blocks high, so columns 0 and 2 are wells 1 block wide and 3 blocks deep
+        BoardArray board = new BoardArray(4, 20);
+        for (int y = 0; y < 3; y++) {
+            board.setPieceColour(1, y, Piece.PieceColour.Z);
+            board.setPieceColour(3, y, Piece.PieceColour.Z);
+        }
+
+        assertTrue(board.canPlaceWithoutHoles(Piece.PieceColour.I));
+        assertFalse(board.canPlaceWithoutHoles(Piece.PieceColour.O));
+    }
+
+    @Test
+    void test_PlacementQueries_MatchPlacingThePiece() {
+        BoardArray board = new BoardArray(30, 20);
+        Random random = new Random(2);
+        PieceOrientation[] orientations = PieceOrientation.values();
+
+        for (int i = 0; i < 2000; i++) {
+            // Build a random skyline, then drop a random Piece on it
+            board.clear();
+            for (int x = 0; x < board.width; x++) {
+                int columnHeight = random.nextInt(12);
+                for (int y = 0; y < columnHeight; y++) {
+                    board.setPieceColour(x, y, Piece.PieceColour.Z);
+                }
+            }
+
+            PieceOrientation orientation = orientations[random.nextInt(orientations.length)];
+            int pieceX = -orientation.minXOffset +
+                    random.nextInt(board.width - orientation.maxXOffset + orientation.minXOffset);
+            Piece piece = new Piece(board, orientation, pieceX, 0);
+            piece.boardY = piece.findLandingRow();
+
+            long hash = board.getHashWith(orientation, pieceX, piece.boardY);
+            int bumpiness = board.getBumpinessWith(orientation, pieceX, piece.boardY);
+            int wellDepth = board.getWellDepthWith(orientation, pieceX, piece.boardY);
+            int minHeight = board.getMinColumnHeightWith(orientation, pieceX, piece.boardY);
+            int maxHeight = board.getMaxColumnHeightWith(orientation, pieceX, piece.boardY);
+
+            piece.placePieceOnBoard();
+            assertEquals(board.getHash(), hash);
+            assertEquals(board.getBumpiness(), bumpiness);
+            assertEquals(board.getWellDepth(), wellDepth);
+            assertEquals(board.getMinColumnHeight(), minHeight);
+            assertEquals(board.getMaxColumnHeight(), maxHeight);
+        }
+    }
+
+    @Test
+    void test_DropBottomRows_MatchesBuildingTheRowsAbove() {
+        BoardArray board = new BoardArray(70, 20);
+        Random random = new Random(2);
+
+        for (int i = 0; i < 200; i++) {
+            // A random board with holes, every column at least 4 high
+            board.clear();
+            for (int x = 0; x < board.width; x++) {
+                int columnHeight = 4 + random.nextInt(board.height - 4);
+                for (int y = 0; y < columnHeight; y++) {
+                    if (y == columnHeight - 1 || random.nextInt(4) != 0) {
+                        board.setPieceColour(x, y, Piece.PieceColour.values()[random.nextInt(7)]);
+                    }
+                }
+            }
+
+            int rows = 1 + random.nextInt(board.getMinColumnHeight());
+            int droppedHoles = 0;
+            BoardArray expected = new BoardArray(70, 20);
+            for (int x = 0; x < board.width; x++) {
+                for (int y = 0; y < board.height; y++) {
+                    if (y < rows) {
+                        if (board.getBlock(x, y) == null) droppedHoles++;
+                    } else {
+                        expected.set(x, y - rows, board.getBlock(x, y));
+                    }
+                }
+            }
+
+            assertEquals(droppedHoles, board.dropBottomRows(rows));
+            assertEquals(expected.toString(), board.toString());
+            for (int x = 0; x < board.width; x++) {
+                assertEquals(expected.getColumnHeight(x), board.getColumnHeight(x));
+            }
+            assertEquals(expected.getHoleCount(), board.getHoleCount());
+            assertEquals(expected.getHash(), board.getHash());
+            assertEquals(expected.getBumpiness(), board.getBumpiness());
+            assertEquals(expected.getWellDepth(), board.getWellDepth());
+            assertEquals(expected.getMinColumnHeight(), board.getMinColumnHeight());
+            assertEquals(expected.getMaxColumnHeight(), board.getMaxColumnHeight());
+        }
+    }
+
+    private static int scanColumnHeight(BoardArray board, int x) {
+        for (int y = board.height - 1; y >= 0; y--) {
+            if (board.getBlock(x, y) != null) return y + 1;
+        }
+
+        return 0;
+    }
+}
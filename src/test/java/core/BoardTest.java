@@ -0,0 +1,180 @@
+package core;
+
+import core.Piece.PieceColour;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class BoardTest {
+
+
+    @Test
+    void test_Backtrack_RestoresBoardQueueAndHold() {
+        Window.logging = false;
+        Window.argBacktrackDepth = 8;
+        Window.argHold = true;
+
+        try {
+            Board board = new Board(40, 20, new Random(2));
+            int holdsUsed = 0;
+
+            for (int i = 0; i < 30; i++) {
+                long hash = board.board.getHash();
+                String cells = board.board.toString();
+                PieceColour current = board.currentPiece.pieceColour;
+                ArrayList<PieceColour> queue = new ArrayList<>(board.currentPieceList);
+                PieceColour hold = board.holdPieceColour;
+
+                board.simulateCurrentPiece();
+                if (board.holdPieceColour != hold) holdsUsed++;
+
+                board.backtrack();
+                board.loadNextPieceFromQueue();
+
+                assertEquals(hash, board.board.getHash());
+                assertEquals(cells, board.board.toString());
+                assertEquals(current, board.currentPiece.pieceColour);
+                assertEquals(queue, board.currentPieceList);
+                assertEquals(hold, board.holdPieceColour);
+
+                // Carry on from a new placement, so the next step backtracks from a different state
+                board.simulateCurrentPiece();
+                board.loadNextPieceFromQueue();
+            }
+
+            assertEquals(0, board.resets);
+            assertTrue(holdsUsed > 0);
+        } finally {
+            Window.argBacktrackDepth = 0;
+            Window.argHold = false;
+        }
+    }
+
+    @Test
+    void test_Backtrack_ExcludedPlacementIsNotChosenAgain() {
+        Window.logging = false;
+        Window.argBacktrackDepth = 8;
+
+        try {
+            Board board = new Board(10, 20, new Random(2));
+
+            for (int i = 0; i < 20; i++) {
+                board.simulateCurrentPiece();
+                PieceOrientation excludedOrientation = board.currentPiece.orientation;
+                int excludedX = board.currentPiece.boardX;
+
+                board.backtrack();
+                board.loadNextPieceFromQueue();
+                board.simulateCurrentPiece();
+
+                assertFalse(board.currentPiece.orientation == excludedOrientation &&
+                        board.currentPiece.boardX == excludedX);
+                board.loadNextPieceFromQueue();
+            }
+
+            assertEquals(0, board.resets);
+        } finally {
+            Window.argBacktrackDepth = 0;
+        }
+    }
+
+    @Test
+    void test_StuckNextPiece_IsDetected_AndBacktracked() {
+        Window.logging = false;
+        Window.argBacktrackDepth = 8;
+
+        try {
+            // No two neighbouring columns are the same height, so an O can't land anywhere without a hole, and
+            // wherever the I goes that stays true
+            Board board = new Board(4, 20, new Random(2));
+            board.board.setPieceColour(1, 0, PieceColour.Z);
+            board.board.setPieceColour(3, 0, PieceColour.Z);
+            String cells = board.board.toString();
+
+            board.currentPiece = new Piece(board.board, PieceColour.I, 0, 0);
+            board.currentPieceList.clear();
+            board.currentPieceList.add(PieceColour.O);
+            board.currentPieceList.add(PieceColour.T);
+
+            board.simulateCurrentPiece();
+
+            assertEquals(1, board.deadEndsDetected);
+            assertEquals(1, board.backtracks);
+            assertEquals(0, board.resets);
+            assertEquals(cells, board.board.toString());
+            assertEquals(PieceColour.I, board.currentPieceList.get(0));
+            assertEquals(PieceColour.O, board.currentPieceList.get(1));
+        } finally {
+            Window.argBacktrackDepth = 0;
+        }
+    }
+
+    @Test
+    void test_Chaos_NeverGoesOverHoleBudget() {
+        Window.logging = false;
+        Window.chaos = 0.2f;
+
+        try {
+            Board board = new Board(12, 20, new Random(2));
+            assertEquals((int) (0.2f * 12 * 20), board.holeBudget);
+
+            int perfectBoards = 0;
+            int mostHoles = 0;
+            for (int i = 0; i < 3000; i++) {
+                board.simulateCurrentPiece();
+                board.loadNextPieceFromQueue();
+
+                assertTrue(board.board.getHoleCount() <= board.holeBudget, board.board.toString());
+                mostHoles = Math.max(mostHoles, board.board.getHoleCount());
+
+                if (board.shouldSaveAndResetBoard) {
+                    perfectBoards++;
+                    board.startNextImage();
+                }
+            }
+
+            // The budget has to be used for the test to mean anything
+            assertTrue(mostHoles > 0);
+            assertTrue(perfectBoards > 0);
+        } finally {
+            Window.chaos = 0;
+        }
+    }
+
+    @Test
+    void test_TowerRun_EndsAtHeightDifference() {
+        Window.logging = false;
+        Window.heightDiff = 4;
+        PotentialBoardState.setScoringStrategy(WeightedScoring.towers());
+
+        try {
+            Board board = new Board(12, 20, new Random(2));
+
+            int finishedBoards = 0;
+            for (int i = 0; i < 20000 && finishedBoards < 3; i++) {
+                board.simulateCurrentPiece();
+                board.loadNextPieceFromQueue();
+
+                if (board.shouldSaveAndResetBoard) {
+                    // The visible part of the board goes from the lowest column to the top of the visible area
+                    int highest = Math.min(board.board.getMaxColumnHeight(), board.board.visibleHeight);
+                    assertEquals(4, highest - board.board.getMinColumnHeight(), board.board.toString());
+
+                    finishedBoards++;
+                    board.startNextImage();
+                }
+            }
+
+            assertEquals(3, finishedBoards);
+        } finally {
+            Window.heightDiff = 0;
+            PotentialBoardState.setScoringStrategy(WeightedScoring.flatStacking());
+        }
+    }
+}
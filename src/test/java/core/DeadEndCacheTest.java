@@ -0,0 +1,35 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class DeadEndCacheTest {
+
+
+    @Test
+    void test_FullSet_EvictsUnreferencedHash() {
+        // A capacity of 4 is a single set, so every hash competes for the same 4 slots
+        DeadEndCache cache = new DeadEndCache(4);
+        for (long hash = 1; hash <= 4; hash++) {
+            cache.add(hash);
+        }
+
+        // Hashes 1 and 2 are referenced, so the clock hand passes over them and evicts 3
+        assertTrue(cache.contains(1));
+        assertTrue(cache.contains(2));
+        cache.add(5);
+
+        assertTrue(cache.contains(1));
+        assertTrue(cache.contains(2));
+        assertFalse(cache.contains(3));
+        assertTrue(cache.contains(4));
+        assertTrue(cache.contains(5));
+
+        assertEquals(6, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+}
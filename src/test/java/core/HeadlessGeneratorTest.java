@@ -0,0 +1,85 @@
+package core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+class HeadlessGeneratorTest {
+    // Window settings the tests change, put back after each test so other tests don't see them
+    private int widthInBlocks;
+    private int heightInBlocks;
+    private int cellDiameter;
+    private int argSeed;
+    private int argThreads;
+    private int argOutputNum;
+    private boolean argStream;
+
+
+    @BeforeEach
+    void saveSettings() {
+        widthInBlocks = Window.widthInBlocks;
+        heightInBlocks = Window.heightInBlocks;
+        cellDiameter = Window.cellDiameter;
+        argSeed = Window.argSeed;
+        argThreads = Window.argThreads;
+        argOutputNum = Window.argOutputNum;
+        argStream = Window.argStream;
+    }
+
+    @AfterEach
+    void restoreSettings() {
+        Window.widthInBlocks = widthInBlocks;
+        Window.heightInBlocks = heightInBlocks;
+        Window.cellDiameter = cellDiameter;
+        Window.argSeed = argSeed;
+        Window.argThreads = argThreads;
+        Window.argOutputNum = argOutputNum;
+        Window.argStream = argStream;
+    }
+
+    @Test
+    void test_SameSeed_SavesSameImages_WithSeveralThreads() {
+        Window.logging = false;
+        Window.widthInBlocks = 12;
+        Window.heightInBlocks = 20;
+        Window.cellDiameter = 2;
+        Window.argSeed = 3;
+        Window.argThreads = 4;
+        Window.argOutputNum = 12;
+        Window.argStream = false;
+
+        Map<String, Integer> first = generateImages();
+        Map<String, Integer> second = generateImages();
+
+        assertEquals(12, first.size());
+        assertEquals(first, second);
+    }
+
+    /**
+     * @return Hash of the pixels of every image that was saved, by file name
+     */
+    private static Map<String, Integer> generateImages() {
+        final Map<String, Integer> images = new ConcurrentHashMap<>();
+        ImageWriter writer = new ImageWriter(1, 1) {
+            @Override
+            void submit(BufferedImage image, String fileName) {
+                images.put(fileName, Arrays.hashCode(image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0,
+                        image.getWidth())));
+            }
+        };
+
+        HeadlessGenerator.generateImages(writer, new AtomicInteger());
+        writer.finish();
+
+        return images;
+    }
+}
@@ -0,0 +1,42 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class ImageWriterTest {
+
+
+    @Test
+    void test_FailedImage_IsSkipped_AndLaterImagesAreWritten(@TempDir final File directory) {
+        assertTimeoutPreemptively(Duration.ofSeconds(30), new Executable() {
+            @Override
+            public void execute() {
+                // One writer and room for one image, so if the writer died the later submits would block forever
+                ImageWriter writer = new ImageWriter(1, 1);
+                BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+
+                // ImageIO throws an IllegalArgumentException for a null image
+                writer.submit(null, new File(directory, "broken.png").getPath());
+                for (int i = 0; i < 3; i++) {
+                    writer.submit(image, new File(directory, i + ".png").getPath());
+                }
+                writer.finish();
+
+                assertEquals(1, writer.getFailureCount());
+                for (int i = 0; i < 3; i++) {
+                    assertTrue(new File(directory, i + ".png").isFile());
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,37 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+class ParallelCandidateSearchTest {
+
+
+    @Test
+    void test_SameSeed_GeneratesSameBoard() {
+        Window.logging = false;
+        Window.argParallel = true;
+
+        try {
+            // Wide enough for each orientation to be split into several tasks
+            Board first = simulatePieces(new Board(600, 20, new Random(2)), 300);
+            Board second = simulatePieces(new Board(600, 20, new Random(2)), 300);
+
+            assertEquals(first.board.toString(), second.board.toString());
+        } finally {
+            Window.argParallel = false;
+        }
+    }
+
+    private static Board simulatePieces(Board board, int pieces) {
+        for (int i = 0; i < pieces; i++) {
+            board.simulateCurrentPiece();
+            board.loadNextPieceFromQueue();
+        }
+
+        return board;
+    }
+}
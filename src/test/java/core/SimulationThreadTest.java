@@ -0,0 +1,98 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+
+class SimulationThreadTest {
+
+
+    @Test
+    void test_Snapshots_AreNewerEachTime_AndNotChangedWhileHeld() throws InterruptedException {
+        Window.logging = false;
+        Window.argFrameBudget = 1;
+        Window.argOutputNum = Integer.MAX_VALUE;
+
+        // Big enough that no Board is finished during the test, so nothing is saved
+        ImageWriter imageWriter = new ImageWriter(1, 2);
+        Board board = new Board(300, 300, new Random(2));
+        SimulationThread simulation = new SimulationThread(board, imageWriter);
+        simulation.start();
+
+        try {
+            BoardSnapshot front = null;
+            long lastSequence = 0;
+            // What the window would show, built up from the snapshots the same way the window draws them
+            int[] shownPixels = new int[board.board.width * board.board.visibleHeight];
+
+            for (int i = 0; i < 20; i++) {
+                front = waitForNewerSnapshot(simulation, front);
+                assertEquals(lastSequence + 1, front.sequence);
+                lastSequence = front.sequence;
+
+                // The simulation carries on while the window holds the snapshot, but must not write to it
+                int[] cellPixels = front.cellPixels.clone();
+                int[] changedCells = Arrays.copyOf(front.changedCells, front.changedCellCount);
+                int[] changedColours = Arrays.copyOf(front.changedColours, front.changedCellCount);
+                Thread.sleep(5);
+                assertArrayEquals(cellPixels, front.cellPixels);
+                assertArrayEquals(changedCells, Arrays.copyOf(front.changedCells, front.changedCellCount));
+                assertArrayEquals(changedColours, Arrays.copyOf(front.changedColours, front.changedCellCount));
+
+                apply(front, shownPixels);
+            }
+
+            // The simulation starts running, so toggling pauses it. Once a paused snapshot has been published no more
+            // Pieces are placed
+            simulation.send(SimulationThread.Command.TOGGLE_PAUSE);
+            do {
+                front = waitForNewerSnapshot(simulation, front);
+                apply(front, shownPixels);
+            } while (!front.paused);
+
+            front = waitForNewerSnapshot(simulation, front);
+            assertFalse(front.fullRedraw);
+            assertEquals(0, front.changedCellCount);
+
+            // The simulation is paused, so it is safe to look at the Board from here
+            int[] boardPixels = new int[shownPixels.length];
+            BoardRenderer.render(board.board, 1, boardPixels);
+            assertArrayEquals(boardPixels, shownPixels);
+        } finally {
+            simulation.interrupt();
+            simulation.join();
+            imageWriter.finish();
+            Window.argFrameBudget = 12;
+            Window.argOutputNum = 1;
+        }
+    }
+
+    /**
+     * Draws a snapshot over what is shown, at one pixel per cell
+     */
+    private static void apply(BoardSnapshot snapshot, int[] shownPixels) {
+        if (snapshot.fullRedraw) {
+            System.arraycopy(snapshot.cellPixels, 0, shownPixels, 0, shownPixels.length);
+        } else {
+            for (int i = 0; i < snapshot.changedCellCount; i++) {
+                shownPixels[snapshot.changedCells[i]] = snapshot.changedColours[i];
+            }
+        }
+    }
+
+    private static BoardSnapshot waitForNewerSnapshot(SimulationThread simulation, BoardSnapshot front)
+            throws InterruptedException {
+        while (true) {
+            BoardSnapshot newest = simulation.takeSnapshot(front);
+            if (newest != front) return newest;
+
+            Thread.sleep(1);
+        }
+    }
+}
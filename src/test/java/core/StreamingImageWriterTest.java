@@ -0,0 +1,143 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class StreamingImageWriterTest {
+    private static final int WIDTH = 13;
+    private static final int HEIGHT = 400;
+    // 13 cells of 3 pixels are 117 bytes, so every row of the file is padded to 120
+    private static final int CELL_DIAMETER = 3;
+
+
+    @Test
+    void test_StreamedImage_HasEveryRowOnce_BottomRowFirst(@TempDir File directory) throws IOException {
+        Window.logging = false;
+        Window.argStream = true;
+        Window.chaos = 0.2f;
+
+        try {
+            // Taller than the rows the Board keeps, so bands are written and dropped while the image is being filled
+            final Board board = new Board(WIDTH, HEIGHT, new Random(1));
+            assertTrue(board.board.visibleHeight < HEIGHT);
+
+            // Colours of every board row as it is written, from the bottom of the image up
+            final ArrayList<int[]> writtenRows = new ArrayList<>();
+            File file = new File(directory, "0.bmp");
+            StreamingImageWriter out = new StreamingImageWriter(file.getPath(), WIDTH, HEIGHT, CELL_DIAMETER) {
+                @Override
+                void writeRows(BoardArray rows, int firstRow, int rowCount) throws IOException {
+                    for (int y = firstRow; y < firstRow + rowCount; y++) {
+                        int[] row = new int[rows.width];
+                        for (int x = 0; x < rows.width; x++) {
+                            row[x] = BoardRenderer.cellColour(rows, x, y);
+                        }
+                        writtenRows.add(row);
+                    }
+
+                    super.writeRows(rows, firstRow, rowCount);
+                }
+            };
+
+            HeadlessGenerator.streamImage(board, out);
+            assertTrue(board.streamedRows > 0);
+            assertEquals(HEIGHT, writtenRows.size());
+
+            // Without backtracking or resets no Piece is ever removed, so every Block placed has to be in the image
+            // exactly once, apart from the ones stacked above the top of the image
+            assertEquals(0, board.resets);
+            int background = 0xFF000000 | BoardRenderer.BACKGROUND * 0x010101;
+            int blocks = 0;
+            for (int[] row : writtenRows) {
+                for (int colour : row) {
+                    if (colour != background) blocks++;
+                }
+            }
+            // The image has to have holes for the count to mean anything
+            assertTrue(blocks < WIDTH * HEIGHT);
+
+            for (int y = board.board.visibleHeight; y < board.board.height; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    if (board.board.getBlock(x, y) != null) blocks++;
+                }
+            }
+            assertEquals(4 * board.piecesPlaced, blocks);
+
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            int rowSize = 120;
+            assertEquals('B', bytes[0]);
+            assertEquals('M', bytes[1]);
+            assertEquals(54 + rowSize * HEIGHT * CELL_DIAMETER, bytes.length);
+            assertEquals(bytes.length, readInt(bytes, 2));
+            assertEquals(54, readInt(bytes, 10));
+            assertEquals(WIDTH * CELL_DIAMETER, readInt(bytes, 18));
+            assertEquals(HEIGHT * CELL_DIAMETER, readInt(bytes, 22));
+
+            // The file stores its rows bottom first, so its first row of pixels is the bottom row of the board
+            for (int pixelRow = 0; pixelRow < HEIGHT * CELL_DIAMETER; pixelRow++) {
+                int[] row = writtenRows.get(pixelRow / CELL_DIAMETER);
+
+                for (int pixelX = 0; pixelX < WIDTH * CELL_DIAMETER; pixelX++) {
+                    int offset = 54 + pixelRow * rowSize + pixelX * 3;
+                    int pixel = 0xFF000000 | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 1] & 0xFF) << 8 |
+                            bytes[offset] & 0xFF;
+                    assertEquals(row[pixelX / CELL_DIAMETER], pixel, "Pixel " + pixelX + ", " + pixelRow);
+                }
+            }
+        } finally {
+            Window.argStream = false;
+            Window.chaos = 0;
+        }
+    }
+
+    @Test
+    void test_FailedImage_IsDeleted(@TempDir File directory) throws IOException {
+        Window.logging = false;
+        Window.argStream = true;
+
+        try {
+            final Board board = new Board(WIDTH, HEIGHT, new Random(1));
+            final File file = new File(directory, "0.bmp");
+            final StreamingImageWriter out = new StreamingImageWriter(file.getPath(), WIDTH, HEIGHT, CELL_DIAMETER) {
+                @Override
+                void writeRows(BoardArray rows, int firstRow, int rowCount) throws IOException {
+                    // The first band is written, then the disk fills up
+                    if (board.streamedRows > 0) throw new IOException("No space left on device");
+                    super.writeRows(rows, firstRow, rowCount);
+                }
+            };
+
+            assertThrows(IOException.class, new Executable() {
+                @Override
+                public void execute() throws IOException {
+                    HeadlessGenerator.streamImage(board, out);
+                }
+            });
+            assertTrue(board.streamedRows > 0);
+            assertFalse(file.exists());
+        } finally {
+            Window.argStream = false;
+        }
+    }
+
+    /**
+     * Reads a little endian int from a byte array
+     */
+    private static int readInt(byte[] bytes, int index) {
+        return bytes[index] & 0xFF | (bytes[index + 1] & 0xFF) << 8 | (bytes[index + 2] & 0xFF) << 16 |
+                (bytes[index + 3] & 0xFF) << 24;
+    }
+}
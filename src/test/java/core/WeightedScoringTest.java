@@ -0,0 +1,55 @@
+package core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class WeightedScoringTest {
+
+
+    @Test
+    void test_LowerBound_NeverMoreThanScore() {
+        Window.logging = false;
+        Random random = new Random(2);
+        WeightedScoring[] strategies = new WeightedScoring[]{WeightedScoring.flatStacking(), WeightedScoring.towers(),
+                WeightedScoring.flatStackingAvoidingWells()};
+
+        Board board = new Board(30, 20, new Random(2));
+        board.currentTowerGoal = new TowerGoal(7, 10);
+        PotentialBoardState state = new PotentialBoardState(board);
+        PieceOrientation[] orientations = PieceOrientation.values();
+
+        for (int i = 0; i < 2000; i++) {
+            // Build a random skyline that is bumpy enough to have wells but flat enough for Pieces to fit without
+            // holes, then drop a random Piece on it
+            board.board.clear();
+            for (int x = 0; x < board.board.width; x++) {
+                int columnHeight = random.nextInt(4);
+                for (int y = 0; y < columnHeight; y++) {
+                    board.board.setPieceColour(x, y, Piece.PieceColour.Z);
+                }
+            }
+
+            PieceOrientation orientation = orientations[random.nextInt(orientations.length)];
+            int pieceX = -orientation.minXOffset +
+                    random.nextInt(board.board.width - orientation.maxXOffset + orientation.minXOffset);
+            Piece piece = new Piece(board.board, orientation, pieceX, 0);
+            piece.boardY = piece.findLandingRow();
+
+            // The bound only has to hold for placements without holes
+            if (piece.countNewHoles() > 0) continue;
+
+            state.setWithoutPlacing(orientation, pieceX, piece.boardY);
+
+            for (WeightedScoring strategy : strategies) {
+                float bound = strategy.lowerBound(board, orientation, pieceX);
+                float score = strategy.score(state.features);
+
+                assertTrue(bound <= score, "Bound " + bound + " is more than score " + score);
+            }
+        }
+    }
+}